@@ -0,0 +1,690 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The game logic of one Minesweeper board, without any drawing.
+ *
+ * The boxes are kept in flat arrays with an extra box all the way around the board (padding).
+ * Box (row, col) is at index (row + 1) * stride + col + 1, where stride = columns + 2, and the
+ * eight boxes around any box are at index + offset for the offsets in getNeighbourOffsets().
+ * The padding boxes have no mine and are never hidden, so counting, cascades and chording walk
+ * the same eight offsets for every box without checking for corners or sides.
+ *
+ * A board can be made without its mines, which are then placed when the first box is revealed,
+ * never in or next to that box (see placeMines()). A board made with its mines can have them
+ * moved away from the first box instead (see makeSafe()).
+ *
+ * The three arrays (mines, counts and states) are regions of one ByteBuffer, read and written
+ * through mine(), count() and state(). It is on the heap unless the board is made with a
+ * BoardArena, which keeps it outside the Java heap for servers holding many paused games; such
+ * a board gives its block back with release().
+ *
+ * The board also keeps a 64-bit Zobrist hash of what a player can see (see getHash()), which
+ * every state change updates in O(1), so positions can be looked up in a cache.
+ *
+ * @author martin
+ *
+ */
+public class Board {
+
+	private static final Minesweeper.BoxState[] STATES = Minesweeper.BoxState.values();
+
+	private static final byte HIDDEN = (byte) Minesweeper.BoxState.HIDDEN.ordinal();
+	private static final byte SHOWN = (byte) Minesweeper.BoxState.SHOWN.ordinal();
+	private static final byte FLAGGED = (byte) Minesweeper.BoxState.FLAGGED.ordinal();
+	private static final byte PADDING = SHOWN; // The state of the padding boxes, so they are never revealed.
+
+	/** What a player can see of a box, as returned by getVisible(). Shown boxes are their mine count. **/
+
+	public static final byte VISIBLE_HIDDEN = -1;
+	public static final byte VISIBLE_FLAGGED = -2;
+	public static final byte VISIBLE_PADDING = -3;
+	public static final byte VISIBLE_MINE = -4;		// A shown mine (the game is lost).
+
+	/** Which boxes are kept free of mines around the first box revealed. **/
+
+	private static final int KEEP_NONE = 0;		// None: every box has a mine.
+	private static final int KEEP_BOX = 1;		// The box itself.
+	private static final int KEEP_AREA = 2;		// The box and the boxes around it.
+
+	/**
+	 * Gets told about every state change made by a move (reveal, flag or chord).
+	 */
+	public interface StateListener {
+		void stateChanged(int row, int col, Minesweeper.BoxState oldState, Minesweeper.BoxState newState);
+	}
+
+	private final int rows;				// The number of rows on the board.
+	private final int columns;			// The number of columns on the board.
+	private final int stride;			// The length of a padded row.
+	private final int[] neighbours;		// The offsets of the eight boxes around a box.
+
+	private final int size;				// The length of the padded arrays.
+	private final BoardArena arena;		// Where the boxes are kept, or null for the heap.
+	private BoardArena.Block block;		// The boxes' block of the arena, null once released.
+	private ByteBuffer boxes;			// The three arrays, one after the other.
+	private final int minesAt;			// Where the mines start: 1 if the box has a mine, 0 if not.
+	private final int countsAt;			// Where the counts start: the number of mines around each box.
+	private final int statesAt;			// Where the states start: the ordinal of each box's BoxState.
+	private int numberOfMines;			// The number of mines on the board.
+	private boolean minesPlaced;		// False until the mines of a board made without them are placed.
+	private Random random;				// Where mines are placed or moved to, for a board made without them.
+
+	/** Winning/Losing conditions **/
+
+	private int boxesShown;				// The number of boxes without a mine in the shown state.
+	private int flagsPlaced;			// The number of flags placed.
+	private boolean hitMine;			// Represents if a box with a mine has been shown.
+
+	private long version;				// Goes up by one with every state change.
+	private long hash;					// The Zobrist hash of getVisible().
+	private StateListener listener;
+	private int[] stack = new int[16];	// Boxes waiting to be looked at by a cascade.
+
+	/**
+	 * Creates a board with every box hidden.
+	 * @param mines Where the mines are placed, indexed [row][column].
+	 */
+	public Board(boolean[][] mines) {
+		this(mines, null);
+	}
+
+	/**
+	 * Creates a board with every box hidden, kept in a block of an arena.
+	 * @param mines Where the mines are placed, indexed [row][column].
+	 * @param arena Where to keep the boxes, or null for the heap.
+	 */
+	public Board(boolean[][] mines, BoardArena arena) {
+		this(mines.length, mines[0].length, arena);
+		for(int row = 0; row < rows; row++) {
+			for(int col = 0; col < columns; col++) {
+				if(mines[row][col]) {
+					setMine(index(row, col), 1);
+					numberOfMines++;
+				}
+			}
+		}
+		countAll();
+		minesPlaced = true;
+	}
+
+	/**
+	 * Creates a board with every box hidden and no mines yet. The mines are placed when the
+	 * first box is revealed, so the first box revealed is never a mine.
+	 * @param rows The number of rows.
+	 * @param columns The number of columns.
+	 * @param numberOfMines The number of mines to place.
+	 * @param random Where to place them.
+	 */
+	public Board(int rows, int columns, int numberOfMines, Random random) {
+		this(rows, columns, numberOfMines, random, null);
+	}
+
+	/**
+	 * Creates a board with every box hidden and no mines yet, kept in a block of an arena.
+	 * @param rows The number of rows.
+	 * @param columns The number of columns.
+	 * @param numberOfMines The number of mines to place.
+	 * @param random Where to place them.
+	 * @param arena Where to keep the boxes, or null for the heap.
+	 */
+	public Board(int rows, int columns, int numberOfMines, Random random, BoardArena arena) {
+		this(rows, columns, arena);
+		if(numberOfMines < 0 || numberOfMines > rows * columns)
+			throw new IllegalArgumentException("Can't place " + numberOfMines + " mines in " + rows + "x" + columns);
+		this.numberOfMines = numberOfMines;
+		this.random = random;
+	}
+
+	/**
+	 * Creates the padded arrays, with every box hidden and no mines.
+	 */
+	private Board(int rows, int columns, BoardArena arena) {
+		this.rows = rows;
+		this.columns = columns;
+		stride = columns + 2;
+		neighbours = neighbourOffsets(stride);
+
+		size = (rows + 2) * stride;
+		this.arena = arena;
+		if(arena != null) {
+			block = arena.allocate(3 * size);
+			boxes = block.slab;
+			minesAt = block.offset;
+		}
+		else {
+			boxes = ByteBuffer.allocate(3 * size);
+			minesAt = 0;
+		}
+		countsAt = minesAt + size;
+		statesAt = countsAt + size;
+
+		// A block holds whatever its last board left in it.
+		for(int box = 0; box < size; box++) {
+			setMine(box, 0);
+			boxes.put(countsAt + box, (byte) 0);
+			putState(box, isOnBoard(box) ? HIDDEN : PADDING);
+		}
+	}
+
+	/**
+	 * Gives the block of a board made with a BoardArena back to the arena. The board must
+	 * not be used afterwards. Does nothing for a board on the heap.
+	 */
+	public void release() {
+		if(block == null)
+			return;
+		arena.free(block);
+		block = null;
+		boxes = null;
+	}
+
+	/** The boxes, read and written through these. **/
+
+	private byte mine(int box) {
+		return boxes.get(minesAt + box);
+	}
+
+	private void setMine(int box, int mine) {
+		boxes.put(minesAt + box, (byte) mine);
+	}
+
+	private byte count(int box) {
+		return boxes.get(countsAt + box);
+	}
+
+	private void addCount(int box, int delta) {
+		boxes.put(countsAt + box, (byte) (count(box) + delta));
+	}
+
+	private byte state(int box) {
+		return boxes.get(statesAt + box);
+	}
+
+	private void putState(int box, byte state) {
+		boxes.put(statesAt + box, state);
+	}
+
+	/**
+	 * Works out the offsets of the eight Directions in a padded flat array.
+	 * @param stride The length of a padded row.
+	 * @return One offset for each Direction, in the order of Direction.values().
+	 */
+	public static int[] neighbourOffsets(int stride) {
+		Direction[] directions = Direction.values();
+		int[] offsets = new int[directions.length];
+		for(int i = 0; i < directions.length; i++)
+			offsets[i] = directions[i].getRow() * stride + directions[i].getCol();
+		return offsets;
+	}
+
+	/**
+	 * Counts the mines around every box of the board, a row at a time (see MineCounter).
+	 */
+	private void countAll() {
+		MineCounter.countAll(boxes, minesAt, countsAt, rows, columns);
+	}
+
+	/*********** MINES ************/
+
+	/**
+	 * Places the mines of a board made without them, so that a box and the boxes around it
+	 * have none (if there are too many mines for that, only the box itself is kept free).
+	 * Every way of placing them is equally likely. reveal() calls this for the first box if
+	 * it hasn't been called yet.
+	 *
+	 * It is done in one pass over the board (selection sampling): each box that may have a
+	 * mine gets one with probability (mines still to place) / (boxes still to look at).
+	 * @param row The row of the first box revealed.
+	 * @param col The column of the first box revealed.
+	 */
+	public void placeMines(int row, int col) {
+		if(minesPlaced)
+			return;
+		int keep = keptFree(row, col);
+
+		int kept = (keep == KEEP_AREA) ? areaSize(row, col) : (keep == KEEP_BOX) ? 1 : 0;
+		int candidates = rows * columns - kept;
+		int needed = numberOfMines;
+		for(int r = 0; r < rows && needed > 0; r++) {
+			for(int c = 0; c < columns; c++) {
+				if(isKeptFree(r, c, row, col, keep))
+					continue;
+				if(random.nextInt(candidates) < needed) {
+					setMine(index(r, c), 1);
+					needed--;
+				}
+				candidates--;
+			}
+		}
+		countAll();
+		minesPlaced = true;
+	}
+
+	/**
+	 * Moves the mines of a box and the boxes around it (or only of the box, if there isn't room
+	 * for them elsewhere) to other boxes, so that revealing the box is safe. For boards made
+	 * with their mines, e.g. from a seed or a file, before the first box is revealed.
+	 *
+	 * Each mine costs O(1) on average: it goes to a random box without a mine outside the area (random
+	 * boxes are tried first, then the boxes after the last one tried), and only the counts
+	 * around its old and new box change.
+	 * @param row The row of the first box to reveal.
+	 * @param col The column of the first box to reveal.
+	 * @param random Where to move the mines to.
+	 * @return The number of mines moved.
+	 */
+	public int makeSafe(int row, int col, Random random) {
+		if(boxesShown > 0 || hitMine)
+			throw new IllegalStateException("Mines can only be moved before any box is shown");
+		if(!minesPlaced) {
+			placeMines(row, col);
+			return 0;
+		}
+		int keep = keptFree(row, col);
+		if(keep == KEEP_NONE)
+			return 0;
+
+		int moved = 0;
+		for(int r = Math.max(row - 1, 0); r <= Math.min(row + 1, rows - 1); r++) {
+			for(int c = Math.max(col - 1, 0); c <= Math.min(col + 1, columns - 1); c++) {
+				int box = index(r, c);
+				if(mine(box) == 0 || !isKeptFree(r, c, row, col, keep))
+					continue;
+				moveMine(box, findFreeBox(row, col, keep, random));
+				moved++;
+			}
+		}
+		return moved;
+	}
+
+	/**
+	 * Returns the number of boxes in the 3x3 area around a box that are on the board.
+	 */
+	private int areaSize(int row, int col) {
+		return (Math.min(row + 1, rows - 1) - Math.max(row - 1, 0) + 1)
+				* (Math.min(col + 1, columns - 1) - Math.max(col - 1, 0) + 1);
+	}
+
+	/**
+	 * Works out which boxes are kept free of mines when (row, col) is the first box revealed:
+	 * the box and the boxes around it if there is room for the mines elsewhere, or else the
+	 * box alone, or else (every box has a mine) none.
+	 * @return KEEP_AREA, KEEP_BOX or KEEP_NONE.
+	 */
+	private int keptFree(int row, int col) {
+		int cells = rows * columns;
+		if(numberOfMines <= cells - areaSize(row, col))
+			return KEEP_AREA;
+		return numberOfMines < cells ? KEEP_BOX : KEEP_NONE;
+	}
+
+	/**
+	 * Returns true if box (r, c) must not get a mine when (row, col) is the first box revealed.
+	 */
+	private static boolean isKeptFree(int r, int c, int row, int col, int keep) {
+		if(keep == KEEP_AREA)
+			return Math.abs(r - row) <= 1 && Math.abs(c - col) <= 1;
+		return keep == KEEP_BOX && r == row && c == col;
+	}
+
+	/**
+	 * Finds a box without a mine where a mine may be moved to.
+	 */
+	private int findFreeBox(int row, int col, int keep, Random random) {
+		int r = 0, c = 0;
+		for(int tries = 0; tries < 32; tries++) {
+			r = random.nextInt(rows);
+			c = random.nextInt(columns);
+			if(mine(index(r, c)) == 0 && !isKeptFree(r, c, row, col, keep))
+				return index(r, c);
+		}
+
+		// A crowded board: look along from the last box tried. There is a free box somewhere.
+		while(mine(index(r, c)) != 0 || isKeptFree(r, c, row, col, keep)) {
+			if(++c == columns) {
+				c = 0;
+				r = (r + 1) % rows;
+			}
+		}
+		return index(r, c);
+	}
+
+	/**
+	 * Moves a mine and updates the counts around both boxes. Only called before any box is
+	 * shown, so a shown box around them is padding, which has no count.
+	 */
+	private void moveMine(int from, int to) {
+		setMine(from, 0);
+		setMine(to, 1);
+		for(int offset : neighbours) {
+			if(state(from + offset) != PADDING)
+				addCount(from + offset, -1);
+			if(state(to + offset) != PADDING)
+				addCount(to + offset, 1);
+		}
+	}
+
+	/**
+	 * Returns false for a board made without mines until its first box is revealed.
+	 */
+	public boolean areMinesPlaced() {
+		return minesPlaced;
+	}
+
+	/*********** MOVES ************/
+
+	/**
+	 * Reveals a hidden box. If it has no mines around it, the hidden boxes around it are
+	 * revealed too, and so on until boxes with a number are reached (cascade).
+	 * @param row The row.
+	 * @param col The column.
+	 * @return The number of boxes revealed.
+	 */
+	public int reveal(int row, int col) {
+		int box = index(row, col);
+		if(state(box) != HIDDEN)
+			return 0;
+		placeMines(row, col);
+		return cascade(box);
+	}
+
+	/**
+	 * Reveals the hidden boxes around a shown box when the right number of flags has been
+	 * placed around it (chording).
+	 * @param row The row.
+	 * @param col The column.
+	 * @return The number of boxes revealed.
+	 */
+	public int chord(int row, int col) {
+		int box = index(row, col);
+		if(state(box) != SHOWN || mine(box) != 0 || count(box) == 0)
+			return 0;
+
+		int flags = 0;
+		for(int offset : neighbours) {
+			if(state(box + offset) == FLAGGED)
+				flags++;
+		}
+		if(flags != count(box))
+			return 0;
+
+		int revealed = 0;
+		for(int offset : neighbours) {
+			if(state(box + offset) == HIDDEN)
+				revealed += cascade(box + offset);
+		}
+		return revealed;
+	}
+
+	/**
+	 * Flags a hidden box, or unflags a flagged one.
+	 * @param row The row.
+	 * @param col The column.
+	 * @return True if the box changed.
+	 */
+	public boolean toggleFlag(int row, int col) {
+		int box = index(row, col);
+		if(state(box) == HIDDEN) {
+			changeState(box, FLAGGED);
+			return true;
+		}
+		if(state(box) == FLAGGED) {
+			changeState(box, HIDDEN);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Reveals a hidden box and cascades from it.
+	 * @param start The index of the box.
+	 * @return The number of boxes revealed.
+	 */
+	private int cascade(int start) {
+		int revealed = 1;
+		changeState(start, SHOWN);
+		if(mine(start) != 0 || count(start) != 0)
+			return revealed;
+
+		int top = 0;
+		stack[top++] = start;
+		while(top > 0) {
+			int box = stack[--top];
+			for(int offset : neighbours) {
+				int next = box + offset;
+				if(state(next) != HIDDEN)
+					continue;
+
+				// A box with no mines around can't have a mine next to it.
+				changeState(next, SHOWN);
+				revealed++;
+				if(count(next) == 0) {
+					if(top == stack.length)
+						stack = Arrays.copyOf(stack, top * 2);
+					stack[top++] = next;
+				}
+			}
+		}
+		return revealed;
+	}
+
+	/**
+	 * Changes the state of a box as part of a move, and tells the listener.
+	 */
+	private void changeState(int box, byte newState) {
+		byte oldState = state(box);
+		updateCounters(box, oldState, newState);
+		hash ^= visibleKey(box, oldState) ^ visibleKey(box, newState);
+		putState(box, newState);
+		version++;
+		if(listener != null)
+			listener.stateChanged(getRow(box), getColumn(box), STATES[oldState], STATES[newState]);
+	}
+
+	/**
+	 * Keeps boxesShown, flagsPlaced and hitMine up to date with a state change.
+	 */
+	private void updateCounters(int box, byte oldState, byte newState) {
+		if(oldState == SHOWN) {
+			if(mine(box) != 0)
+				hitMine = false;
+			else
+				boxesShown--;
+		}
+		if(newState == SHOWN) {
+			if(mine(box) != 0)
+				hitMine = true;
+			else
+				boxesShown++;
+		}
+		if(oldState == FLAGGED)
+			flagsPlaced--;
+		if(newState == FLAGGED)
+			flagsPlaced++;
+	}
+
+	/**
+	 * Sets the state of a box directly, for example when a move is undone.
+	 * The counters are kept up to date but the listener is not told.
+	 * @param row The row.
+	 * @param col The column.
+	 * @param newState The new state.
+	 */
+	public void setState(int row, int col, Minesweeper.BoxState newState) {
+		int box = index(row, col);
+		updateCounters(box, state(box), (byte) newState.ordinal());
+		hash ^= visibleKey(box, state(box)) ^ visibleKey(box, (byte) newState.ordinal());
+		putState(box, (byte) newState.ordinal());
+		version++;
+	}
+
+	/**
+	 * Returns the Zobrist key of what a player sees of a box in a state. Hidden boxes have
+	 * the key 0, so a new board has the hash 0 whatever its size.
+	 */
+	private long visibleKey(int box, byte state) {
+		if(state == HIDDEN)
+			return 0;
+		if(state == FLAGGED)
+			return Zobrist.key(box, VISIBLE_FLAGGED);
+		return Zobrist.key(box, mine(box) != 0 ? VISIBLE_MINE : count(box));
+	}
+
+	/*********** BOXES ************/
+
+	/**
+	 * Returns the index of a box in the padded arrays.
+	 */
+	public int index(int row, int col) {
+		return (row + 1) * stride + col + 1;
+	}
+
+	/**
+	 * Returns the row of a box given its index.
+	 */
+	public int getRow(int box) {
+		return box / stride - 1;
+	}
+
+	/**
+	 * Returns the column of a box given its index.
+	 */
+	public int getColumn(int box) {
+		return box % stride - 1;
+	}
+
+	/**
+	 * Returns the length of the padded arrays, so every index of a box is less than it.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the offsets of the eight boxes around a box, in the order of Direction.values().
+	 * The array is shared and must not be changed.
+	 */
+	public int[] getNeighbourOffsets() {
+		return neighbours;
+	}
+
+	/**
+	 * Returns true if the index is a box of the board and not padding.
+	 */
+	public boolean isOnBoard(int box) {
+		int row = getRow(box);
+		int col = getColumn(box);
+		return row >= 0 && row < rows && col >= 0 && col < columns;
+	}
+
+	public Minesweeper.BoxState getState(int row, int col) {
+		return STATES[state(index(row, col))];
+	}
+
+	public boolean hasMine(int row, int col) {
+		return mine(index(row, col)) != 0;
+	}
+
+	public int getMineCount(int row, int col) {
+		return count(index(row, col));
+	}
+
+	/**
+	 * Returns the state of a box given its index. Padding boxes are SHOWN.
+	 */
+	public Minesweeper.BoxState getStateAt(int box) {
+		return STATES[state(box)];
+	}
+
+	/**
+	 * Returns the number of mines around a box given its index.
+	 */
+	public int getMineCountAt(int box) {
+		return count(box);
+	}
+
+	/**
+	 * Returns true if the box at the index has a mine.
+	 */
+	public boolean hasMineAt(int box) {
+		return mine(box) != 0;
+	}
+
+	/**
+	 * Returns what a player can see of the board, padded like the board's own arrays:
+	 * the mine count of shown boxes, or one of the VISIBLE_ constants.
+	 * @return A new array, safe to hand to another thread.
+	 */
+	public byte[] getVisible() {
+		byte[] visible = new byte[size];
+		Arrays.fill(visible, VISIBLE_PADDING);
+		for(int row = 0; row < rows; row++) {
+			for(int box = index(row, 0), end = box + columns; box < end; box++) {
+				if(state(box) == HIDDEN)
+					visible[box] = VISIBLE_HIDDEN;
+				else if(state(box) == FLAGGED)
+					visible[box] = VISIBLE_FLAGGED;
+				else if(mine(box) != 0)
+					visible[box] = VISIBLE_MINE;
+				else
+					visible[box] = count(box);
+			}
+		}
+		return visible;
+	}
+
+	/*********** GAME ************/
+
+	public int getBoxesShown() {
+		return boxesShown;
+	}
+
+	public int getFlagsPlaced() {
+		return flagsPlaced;
+	}
+
+	public boolean hitMine() {
+		return hitMine;
+	}
+
+	/**
+	 * Returns true once every box without a mine has been shown and no mine has.
+	 */
+	public boolean isCleared() {
+		return !hitMine && boxesShown == rows * columns - numberOfMines;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public int getNumberOfMines() {
+		return numberOfMines;
+	}
+
+	/**
+	 * Returns a number that changes whenever the state of any box changes.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the Zobrist hash of what a player can see (getVisible()). Boxes are keyed by
+	 * their index, so boards with the same number of columns showing the same thing have the
+	 * same hash, and undoing a move brings the hash back to what it was.
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	public void setStateListener(StateListener listener) {
+		this.listener = listener;
+	}
+}
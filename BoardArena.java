@@ -0,0 +1,179 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Keeps the boxes of many boards outside the Java heap, for servers holding lots of paused games.
+ *
+ * Memory is taken from the operating system in slabs (direct buffers) of SLAB_SIZE bytes. Each
+ * slab is cut into blocks of one size class (a power of two from MIN_BLOCK up to SLAB_SIZE),
+ * and a board gets a block of the smallest class it fits in. When a game ends its block goes
+ * on its class's free list and is handed to the next board of that class, so slabs are only
+ * ever added while the number of boards grows. Boards bigger than a slab get a buffer of their
+ * own, which is not recycled.
+ *
+ * The garbage collector sees one buffer object per slab and one small Block per board, however
+ * big or many the boards are, so marking time doesn't grow with the boxes.
+ *
+ * Allocating and freeing are synchronized. Reading and writing blocks is not, since every
+ * block belongs to one board.
+ *
+ * @author martin
+ *
+ */
+public class BoardArena {
+
+	public static final int MIN_BLOCK = 256;			// The smallest size class, in bytes.
+	public static final int SLAB_SIZE = 1 << 20;		// The size of a slab, and of the biggest class.
+
+	private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_BLOCK);
+	private static final int CLASSES = Integer.numberOfTrailingZeros(SLAB_SIZE) - MIN_SHIFT + 1;
+
+	/**
+	 * A piece of a slab that belongs to one board.
+	 */
+	public static class Block {
+		final ByteBuffer slab;	// The slab the block is in.
+		final int offset;		// Where the block starts in the slab.
+		final int size;			// The usable bytes.
+		final int sizeClass;	// The size class, or -1 for a buffer of its own.
+		final int slot;			// The block's number within its class.
+		boolean freed;
+
+		Block(ByteBuffer slab, int offset, int size, int sizeClass, int slot) {
+			this.slab = slab;
+			this.offset = offset;
+			this.size = size;
+			this.sizeClass = sizeClass;
+			this.slot = slot;
+		}
+
+		public int getSize() {
+			return size;
+		}
+	}
+
+	/**
+	 * The slabs and free blocks of one size class.
+	 */
+	private static class SizeClass {
+		final int blockSize;
+		final int blocksPerSlab;
+		final ArrayList<ByteBuffer> slabs = new ArrayList<>();
+		int nextSlot;					// The first block never handed out.
+		int[] free = new int[16];		// The numbers of the freed blocks, as a stack.
+		int freeCount;
+
+		SizeClass(int blockSize) {
+			this.blockSize = blockSize;
+			blocksPerSlab = SLAB_SIZE / blockSize;
+		}
+	}
+
+	private final SizeClass[] classes = new SizeClass[CLASSES];
+
+	/** Statistics **/
+
+	private long reservedBytes;		// Bytes taken from the operating system.
+	private long usedBytes;			// Bytes in blocks that haven't been freed.
+	private int liveBlocks;			// Blocks that haven't been freed.
+
+	public BoardArena() {
+		for(int c = 0; c < CLASSES; c++)
+			classes[c] = new SizeClass(MIN_BLOCK << c);
+	}
+
+	/**
+	 * Returns the size class for a number of bytes, or -1 if it is bigger than a slab.
+	 */
+	private static int sizeClass(int bytes) {
+		if(bytes > SLAB_SIZE)
+			return -1;
+		int shift = 32 - Integer.numberOfLeadingZeros(Math.max(bytes, MIN_BLOCK) - 1);
+		return shift - MIN_SHIFT;
+	}
+
+	/**
+	 * Hands out a block of at least the given size. Its contents are whatever the last board
+	 * left in it.
+	 * @param bytes The number of bytes needed.
+	 * @return The block.
+	 */
+	public synchronized Block allocate(int bytes) {
+		int c = sizeClass(bytes);
+		Block block;
+		if(c < 0) {
+			block = new Block(ByteBuffer.allocateDirect(bytes), 0, bytes, -1, -1);
+			reservedBytes += bytes;
+		}
+		else {
+			SizeClass sizeClass = classes[c];
+			int slot;
+			if(sizeClass.freeCount > 0) {
+				slot = sizeClass.free[--sizeClass.freeCount];
+			}
+			else {
+				slot = sizeClass.nextSlot++;
+				if(slot / sizeClass.blocksPerSlab == sizeClass.slabs.size()) {
+					sizeClass.slabs.add(ByteBuffer.allocateDirect(SLAB_SIZE));
+					reservedBytes += SLAB_SIZE;
+				}
+			}
+			ByteBuffer slab = sizeClass.slabs.get(slot / sizeClass.blocksPerSlab);
+			int offset = (slot % sizeClass.blocksPerSlab) * sizeClass.blockSize;
+			block = new Block(slab, offset, sizeClass.blockSize, c, slot);
+		}
+		usedBytes += block.size;
+		liveBlocks++;
+		return block;
+	}
+
+	/**
+	 * Gives a block back so it can be handed to another board.
+	 * @param block The block. It must not be used afterwards.
+	 */
+	public synchronized void free(Block block) {
+		if(block.freed)
+			throw new IllegalStateException("Block freed twice");
+		block.freed = true;
+		usedBytes -= block.size;
+		liveBlocks--;
+
+		if(block.sizeClass < 0) {
+			// Its own buffer goes back when the garbage collector drops it.
+			reservedBytes -= block.size;
+			return;
+		}
+		SizeClass sizeClass = classes[block.sizeClass];
+		if(sizeClass.freeCount == sizeClass.free.length)
+			sizeClass.free = Arrays.copyOf(sizeClass.free, sizeClass.freeCount * 2);
+		sizeClass.free[sizeClass.freeCount++] = block.slot;
+	}
+
+	/*********** STATISTICS ************/
+
+	/**
+	 * Returns the bytes taken from the operating system.
+	 */
+	public synchronized long getReservedBytes() {
+		return reservedBytes;
+	}
+
+	/**
+	 * Returns the bytes in blocks that are in use.
+	 */
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	/**
+	 * Returns the number of blocks in use.
+	 */
+	public synchronized int getLiveBlocks() {
+		return liveBlocks;
+	}
+
+	public synchronized String toString() {
+		return String.format("%d blocks, %d/%d KB used", liveBlocks, usedBytes / 1024, reservedBytes / 1024);
+	}
+}
@@ -0,0 +1,172 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Keeps every version of the board's BoxState grid so moves can be undone and redone.
+ *
+ * The grid is split into BLOCK_SIZE x BLOCK_SIZE blocks. A version is just an array of
+ * references to blocks, and versions share every block they have in common. While a move
+ * is recorded, the first write to a block copies it (copy-on-write); later writes in the same
+ * move go to the copy. Each undo step only keeps the blocks the move touched, so an undo
+ * step costs memory in proportion to the boxes changed, not to the size of the board.
+ *
+ * @author martin
+ *
+ */
+public class BoardHistory {
+
+	public static final int BLOCK_SIZE = 8; // Blocks are BLOCK_SIZE x BLOCK_SIZE boxes.
+
+	private static final Minesweeper.BoxState[] STATES = Minesweeper.BoxState.values();
+
+	private final int blockColumns; // The number of blocks across the board.
+	private byte[][] blocks;		// The current version: BoxState ordinals, one array per block.
+
+	private int[] touched;			// The blocks copied in the move being recorded.
+	private byte[][] before;		// The block each touched block replaced.
+	private int touchedCount;		// The number of blocks touched in the move being recorded.
+	private int[] touchedStamp;		// touchedStamp[block] == moveStamp if the block was copied in this move.
+	private int moveStamp = 1;
+
+	private final ArrayList<Step> undoSteps = new ArrayList<>();
+	private final ArrayList<Step> redoSteps = new ArrayList<>();
+
+	/**
+	 * One recorded move: the blocks it changed, and their contents before and after.
+	 */
+	private static class Step {
+		final int[] blockIndices;
+		final byte[][] before;
+		final byte[][] after;
+
+		Step(int[] blockIndices, byte[][] before, byte[][] after) {
+			this.blockIndices = blockIndices;
+			this.before = before;
+			this.after = after;
+		}
+	}
+
+	/**
+	 * Creates the history of a new board where every box is hidden.
+	 * @param rows The number of rows on the board.
+	 * @param columns The number of columns on the board.
+	 */
+	public BoardHistory(int rows, int columns) {
+		int blockRows = (rows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		blockColumns = (columns + BLOCK_SIZE - 1) / BLOCK_SIZE;
+
+		// HIDDEN is ordinal 0, so every block of the first version is the same empty block.
+		byte[] hidden = new byte[BLOCK_SIZE * BLOCK_SIZE];
+		blocks = new byte[blockRows * blockColumns][];
+		for(int i = 0; i < blocks.length; i++)
+			blocks[i] = hidden;
+
+		touched = new int[4];
+		before = new byte[4][];
+		touchedStamp = new int[blocks.length];
+	}
+
+	/**
+	 * Records a state change of the move being made. The move ends when commit() is called.
+	 * @param row The row.
+	 * @param col The column.
+	 * @param state The new state of the box.
+	 */
+	public void record(int row, int col, Minesweeper.BoxState state) {
+		int block = (row / BLOCK_SIZE) * blockColumns + col / BLOCK_SIZE;
+
+		if(touchedStamp[block] != moveStamp) {
+			touchedStamp[block] = moveStamp;
+			if(touchedCount == touched.length) {
+				touched = Arrays.copyOf(touched, touchedCount * 2);
+				before = Arrays.copyOf(before, touchedCount * 2);
+			}
+			touched[touchedCount] = block;
+			before[touchedCount] = blocks[block];
+			touchedCount++;
+			blocks[block] = blocks[block].clone();
+		}
+		blocks[block][(row % BLOCK_SIZE) * BLOCK_SIZE + col % BLOCK_SIZE] = (byte) state.ordinal();
+	}
+
+	/**
+	 * Ends the move being recorded and makes it the newest undo step.
+	 * Recording a new move throws away anything that could have been redone.
+	 */
+	public void commit() {
+		if(touchedCount == 0)
+			return;
+
+		int[] indices = Arrays.copyOf(touched, touchedCount);
+		byte[][] after = new byte[touchedCount][];
+		for(int i = 0; i < touchedCount; i++)
+			after[i] = blocks[indices[i]];
+
+		undoSteps.add(new Step(indices, Arrays.copyOf(before, touchedCount), after));
+		redoSteps.clear();
+
+		Arrays.fill(before, 0, touchedCount, null);
+		touchedCount = 0;
+		moveStamp++;
+	}
+
+	/**
+	 * Goes back one move.
+	 * @return The blocks that changed, or null if there is nothing to undo.
+	 */
+	public int[] undo() {
+		if(undoSteps.isEmpty())
+			return null;
+
+		Step step = undoSteps.remove(undoSteps.size() - 1);
+		for(int i = 0; i < step.blockIndices.length; i++)
+			blocks[step.blockIndices[i]] = step.before[i];
+		redoSteps.add(step);
+		return step.blockIndices;
+	}
+
+	/**
+	 * Goes forward one move that was undone.
+	 * @return The blocks that changed, or null if there is nothing to redo.
+	 */
+	public int[] redo() {
+		if(redoSteps.isEmpty())
+			return null;
+
+		Step step = redoSteps.remove(redoSteps.size() - 1);
+		for(int i = 0; i < step.blockIndices.length; i++)
+			blocks[step.blockIndices[i]] = step.after[i];
+		undoSteps.add(step);
+		return step.blockIndices;
+	}
+
+	/**
+	 * Returns the state of a box in the current version.
+	 */
+	public Minesweeper.BoxState getState(int row, int col) {
+		int block = (row / BLOCK_SIZE) * blockColumns + col / BLOCK_SIZE;
+		return STATES[blocks[block][(row % BLOCK_SIZE) * BLOCK_SIZE + col % BLOCK_SIZE]];
+	}
+
+	/**
+	 * Returns the first row of a block.
+	 */
+	public int getBlockRow(int block) {
+		return (block / blockColumns) * BLOCK_SIZE;
+	}
+
+	/**
+	 * Returns the first column of a block.
+	 */
+	public int getBlockColumn(int block) {
+		return (block % blockColumns) * BLOCK_SIZE;
+	}
+
+	public boolean canUndo() {
+		return !undoSteps.isEmpty();
+	}
+
+	public boolean canRedo() {
+		return !redoSteps.isEmpty();
+	}
+}
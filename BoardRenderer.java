@@ -0,0 +1,523 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Draws boards into pixels without JavaFX, for thumbnails of finished games and replay frames.
+ *
+ * A board is drawn the same way draw() in Minesweeper draws it, with the same colours, into an
+ * int[] of ARGB pixels (row by row, width * height), which can then be written as a PNG file.
+ * The numbers and mines are drawn with a small built-in pixel font instead of a real font.
+ *
+ * TopologyBoards are drawn too: square and torus boards as a grid, hex boards as a grid with
+ * the odd rows shifted half a box, and graphs as boxes in rows with their edges drawn as lines
+ * from the topology's neighbour table.
+ *
+ * A renderer keeps no state while drawing, so renderAll() draws many boards at once on all cores.
+ * Each thread reuses its own pixel and PNG buffers, so a thumbnail doesn't make garbage per pixel.
+ *
+ * @author martin
+ *
+ */
+public class BoardRenderer {
+
+	/** The colours of Minesweeper's draw() and setTextColor(), as ARGB. **/
+
+	public static final int WHITE = 0xFFFFFFFF;
+	public static final int BLACK = 0xFF000000;
+	public static final int HIDDEN = 0xFF006400;	// Color.DARKGREEN
+	public static final int SHOWN = 0xFF32CD32;		// Color.LIMEGREEN
+	public static final int FLAGGED = 0xFFFF69B4;	// Color.HOTPINK
+	public static final int MINE = 0xFFFF0000;		// Color.RED, a shown mine.
+	public static final int EDGE = 0xFF808080;		// The edges of a graph.
+
+	private static final int[] TEXT_COLORS = {
+		0,				// No number is drawn.
+		0xFF00008B,		// Color.DARKBLUE
+		0xFF7FFFD4,		// Color.AQUAMARINE
+		0xFFFFFF00,		// Color.YELLOW
+		0xFF9370DB,		// Color.MEDIUMPURPLE
+		0xFFFF0000		// Color.RED, for 5 and up.
+	};
+
+	/**
+	 * The pixel font: 3 columns by 5 rows per glyph, one bit per pixel, top row in the high bits.
+	 * Index 0 to 9 are the digits, then the mine ('*') and '+', for a number too wide for its box.
+	 */
+	private static final int[] GLYPHS = {
+		0b111_101_101_101_111,	// 0
+		0b010_110_010_010_111,	// 1
+		0b111_001_111_100_111,	// 2
+		0b111_001_111_001_111,	// 3
+		0b101_101_111_001_001,	// 4
+		0b111_100_111_001_111,	// 5
+		0b111_100_111_101_111,	// 6
+		0b111_001_001_001_001,	// 7
+		0b111_101_111_101_111,	// 8
+		0b111_101_111_001_111,	// 9
+		0b101_010_111_010_101,	// *
+		0b000_010_111_010_000	// +
+	};
+	private static final int MINE_GLYPH = 10;
+	private static final int PLUS_GLYPH = 11;
+	private static final int GLYPH_WIDTH = 3;
+	private static final int GLYPH_HEIGHT = 5;
+
+	private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+	private final int boxSize;	// The width and height of a box in pixels, without the grid line.
+	private final int scale;	// How many pixels wide a pixel of the font is.
+
+	/** Buffers reused by each thread. **/
+
+	private static final ThreadLocal<PngWriter> PNG_WRITERS = ThreadLocal.withInitial(PngWriter::new);
+	private final ThreadLocal<int[]> pixelBuffers = ThreadLocal.withInitial(() -> new int[0]);
+
+	/**
+	 * Creates a renderer.
+	 * @param boxSize The width and height of a box in pixels (at least 5, the height of the font).
+	 */
+	public BoardRenderer(int boxSize) {
+		if(boxSize < GLYPH_HEIGHT)
+			throw new IllegalArgumentException("Boxes must be at least " + GLYPH_HEIGHT + " pixels, got " + boxSize);
+		this.boxSize = boxSize;
+		scale = Math.max(1, boxSize / 8);
+	}
+
+	public int getWidth(Board board) {
+		return board.getColumns() * (boxSize + 1) + 1;
+	}
+
+	public int getHeight(Board board) {
+		return board.getRows() * (boxSize + 1) + 1;
+	}
+
+	/*********** DRAWING ************/
+
+	/**
+	 * Draws a board into pixels.
+	 * @param board The board. It must not change while it is drawn.
+	 * @param gameOver True to show every mine and number, like draw() does when the game is over.
+	 * @param pixels Where to draw, or null. A new array is made if it is null or too small.
+	 * @return The pixels, getWidth(board) * getHeight(board) of them, row by row.
+	 */
+	public int[] render(Board board, boolean gameOver, int[] pixels) {
+		int width = getWidth(board);
+		int height = getHeight(board);
+		if(pixels == null || pixels.length < width * height)
+			pixels = new int[width * height];
+
+		// Grid lines first, then every box is filled inside them.
+		Arrays.fill(pixels, 0, width * height, BLACK);
+
+		for(int row = 0; row < board.getRows(); row++) {
+			int y = row * (boxSize + 1) + 1;
+			for(int col = 0; col < board.getColumns(); col++) {
+				int x = col * (boxSize + 1) + 1;
+				drawBox(pixels, width, x, y, board.getState(row, col), board.hasMine(row, col),
+						board.getMineCount(row, col), gameOver);
+			}
+		}
+		return pixels;
+	}
+
+	/**
+	 * Draws a board on any topology into pixels.
+	 * @param board The board. It must not change while it is drawn.
+	 * @param gameOver True to show every mine and number.
+	 * @param pixels Where to draw, or null. A new array is made if it is null or too small.
+	 * @return The pixels, getWidth(board) * getHeight(board) of them, row by row.
+	 */
+	public int[] render(TopologyBoard board, boolean gameOver, int[] pixels) {
+		Topology topology = board.getTopology();
+		int width = getWidth(board);
+		int height = getHeight(board);
+		if(pixels == null || pixels.length < width * height)
+			pixels = new int[width * height];
+		Arrays.fill(pixels, 0, width * height, BLACK);
+
+		int size = topology.getSize();
+		if(topology.getShape() == Topology.Shape.GRAPH) {
+			// Each edge once, from the box with the lower number, under the boxes.
+			int[] offsets = topology.getOffsets();
+			int[] neighbours = topology.getNeighbours();
+			int half = boxSize / 2;
+			for(int box = 0; box < size; box++) {
+				for(int k = offsets[box], end = offsets[box + 1]; k < end; k++) {
+					int other = neighbours[k];
+					if(other > box)
+						drawLine(pixels, width, boxX(topology, box) + half, boxY(topology, box) + half,
+								boxX(topology, other) + half, boxY(topology, other) + half, EDGE);
+				}
+			}
+		}
+		for(int box = 0; box < size; box++) {
+			drawBox(pixels, width, boxX(topology, box), boxY(topology, box), board.getState(box), board.hasMine(box),
+					board.getMineCount(box), gameOver);
+		}
+		return pixels;
+	}
+
+	public int getWidth(TopologyBoard board) {
+		Topology topology = board.getTopology();
+		switch(topology.getShape()) {
+		case HEX: return topology.getColumns() * (boxSize + 1) + 1 + (boxSize + 1) / 2;
+		case GRAPH: return graphColumns(topology) * 2 * boxSize;
+		default: return topology.getColumns() * (boxSize + 1) + 1;
+		}
+	}
+
+	public int getHeight(TopologyBoard board) {
+		Topology topology = board.getTopology();
+		if(topology.getShape() == Topology.Shape.GRAPH) {
+			int columns = graphColumns(topology);
+			return (topology.getSize() + columns - 1) / columns * 2 * boxSize;
+		}
+		return topology.getRows() * (boxSize + 1) + 1;
+	}
+
+	/**
+	 * Returns how many boxes of a graph are drawn in a row, so the picture is about square.
+	 */
+	private static int graphColumns(Topology topology) {
+		return (int) Math.ceil(Math.sqrt(topology.getSize()));
+	}
+
+	/**
+	 * Returns the left edge of a box of a topology. Graph boxes are a box apart, to leave
+	 * room for the edges.
+	 */
+	private int boxX(Topology topology, int box) {
+		switch(topology.getShape()) {
+		case HEX:
+			int row = box / topology.getColumns();
+			return box % topology.getColumns() * (boxSize + 1) + 1 + (row % 2) * ((boxSize + 1) / 2);
+		case GRAPH:
+			return box % graphColumns(topology) * 2 * boxSize + boxSize / 2;
+		default:
+			return box % topology.getColumns() * (boxSize + 1) + 1;
+		}
+	}
+
+	/**
+	 * Returns the top edge of a box of a topology.
+	 */
+	private int boxY(Topology topology, int box) {
+		if(topology.getShape() == Topology.Shape.GRAPH)
+			return box / graphColumns(topology) * 2 * boxSize + boxSize / 2;
+		return box / topology.getColumns() * (boxSize + 1) + 1;
+	}
+
+	/**
+	 * Fills a box and draws its mine or number.
+	 */
+	private void drawBox(int[] pixels, int width, int x, int y, Minesweeper.BoxState state, boolean mine, int count,
+			boolean gameOver) {
+		int fill;
+		if(state == Minesweeper.BoxState.HIDDEN)
+			fill = HIDDEN;
+		else if(state == Minesweeper.BoxState.FLAGGED)
+			fill = FLAGGED;
+		else if(mine)
+			fill = MINE;
+		else
+			fill = SHOWN;
+		fillBox(pixels, width, x, y, fill);
+
+		// A game in progress only shows the numbers of shown boxes.
+		if(!gameOver && state != Minesweeper.BoxState.SHOWN)
+			return;
+		if(mine)
+			drawGlyph(pixels, width, x + (boxSize - GLYPH_WIDTH * scale) / 2, y, MINE_GLYPH, BLACK);
+		else if(count > 0)
+			drawNumber(pixels, width, x, y, count, TEXT_COLORS[Math.min(count, TEXT_COLORS.length - 1)]);
+	}
+
+	private void fillBox(int[] pixels, int width, int x, int y, int color) {
+		for(int i = y * width + x, end = (y + boxSize) * width; i < end; i += width)
+			Arrays.fill(pixels, i, i + boxSize, color);
+	}
+
+	/**
+	 * Draws a number in the middle of a box, one glyph per digit with a pixel of the font
+	 * between them, or '+' if it is too wide for the box.
+	 */
+	private void drawNumber(int[] pixels, int width, int x, int y, int number, int color) {
+		int digits = 1;
+		for(int n = number; n >= 10; n /= 10)
+			digits++;
+		int textWidth = (digits * (GLYPH_WIDTH + 1) - 1) * scale;
+		if(textWidth > boxSize) {
+			drawGlyph(pixels, width, x + (boxSize - GLYPH_WIDTH * scale) / 2, y, PLUS_GLYPH, color);
+			return;
+		}
+		int left = x + (boxSize - textWidth) / 2 + textWidth - GLYPH_WIDTH * scale;
+		for(int n = number; digits > 0; digits--, n /= 10, left -= (GLYPH_WIDTH + 1) * scale)
+			drawGlyph(pixels, width, left, y, n % 10, color);
+	}
+
+	/**
+	 * Draws a glyph of the pixel font, in the middle of a box from top to bottom.
+	 * @param left The left edge of the glyph.
+	 * @param y The top edge of the box.
+	 */
+	private void drawGlyph(int[] pixels, int width, int left, int y, int glyph, int color) {
+		int bits = GLYPHS[glyph];
+		int top = y + (boxSize - GLYPH_HEIGHT * scale) / 2;
+
+		for(int gy = 0; gy < GLYPH_HEIGHT; gy++) {
+			for(int gx = 0; gx < GLYPH_WIDTH; gx++) {
+				int bit = (GLYPH_HEIGHT - 1 - gy) * GLYPH_WIDTH + (GLYPH_WIDTH - 1 - gx);
+				if((bits >> bit & 1) == 0)
+					continue;
+				for(int py = 0; py < scale; py++) {
+					int i = (top + gy * scale + py) * width + left + gx * scale;
+					Arrays.fill(pixels, i, i + scale, color);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Draws a straight line, one pixel wide (Bresenham's algorithm).
+	 */
+	private static void drawLine(int[] pixels, int width, int x0, int y0, int x1, int y1, int color) {
+		int dx = Math.abs(x1 - x0);
+		int dy = -Math.abs(y1 - y0);
+		int sx = x0 < x1 ? 1 : -1;
+		int sy = y0 < y1 ? 1 : -1;
+		int error = dx + dy;
+		while(true) {
+			pixels[y0 * width + x0] = color;
+			if(x0 == x1 && y0 == y1)
+				return;
+			int e2 = 2 * error;
+			if(e2 >= dy) {
+				error += dy;
+				x0 += sx;
+			}
+			if(e2 <= dx) {
+				error += dx;
+				y0 += sy;
+			}
+		}
+	}
+
+	/*********** FILES ************/
+
+	/**
+	 * Draws a board and writes it as a PNG file.
+	 * @param board The board. It must not change while it is drawn.
+	 * @param gameOver True to show every mine and number.
+	 * @param file The file.
+	 */
+	public void writePng(Board board, boolean gameOver, Path file) throws IOException {
+		int[] pixels = render(board, gameOver, pixelBuffers.get());
+		pixelBuffers.set(pixels);
+		try(OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+			writePng(pixels, getWidth(board), getHeight(board), out);
+		}
+	}
+
+	/**
+	 * Draws a board on any topology and writes it as a PNG file.
+	 * @param board The board. It must not change while it is drawn.
+	 * @param gameOver True to show every mine and number.
+	 * @param file The file.
+	 */
+	public void writePng(TopologyBoard board, boolean gameOver, Path file) throws IOException {
+		int[] pixels = render(board, gameOver, pixelBuffers.get());
+		pixelBuffers.set(pixels);
+		try(OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+			writePng(pixels, getWidth(board), getHeight(board), out);
+		}
+	}
+
+	/**
+	 * Draws many boards in parallel on all cores, writing each as a PNG file in a directory.
+	 * The boards must not change until this returns.
+	 * @param boards The boards.
+	 * @param gameOver True to show every mine and number.
+	 * @param directory Where to write the files. Board i is written to prefix-i.png.
+	 * @param prefix The start of every file name.
+	 */
+	public void renderAll(List<Board> boards, boolean gameOver, Path directory, String prefix) throws IOException {
+		Files.createDirectories(directory);
+		try {
+			IntStream.range(0, boards.size()).parallel().forEach(i -> {
+				try {
+					writePng(boards.get(i), gameOver, directory.resolve(prefix + "-" + i + ".png"));
+				}
+				catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+		catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Writes ARGB pixels as a PNG file. A board has only a dozen colours, so the pixels are
+	 * written as indices into a palette, a quarter of the size of RGBA. Pictures with more
+	 * than 256 colours are written as RGBA.
+	 */
+	public static void writePng(int[] pixels, int width, int height, OutputStream out) throws IOException {
+		PNG_WRITERS.get().write(pixels, width, height, out);
+	}
+
+	/**
+	 * The buffers for writing PNGs, one per thread.
+	 */
+	private static class PngWriter {
+
+		private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		private final CRC32 crc = new CRC32();
+		private byte[] raw = new byte[0];			// The rows as PNG wants them, each after a filter byte.
+		private byte[] compressed = new byte[0];	// The deflated rows.
+		private final byte[] header = new byte[13];
+		private final byte[] number = new byte[4];
+		private final int[] palette = new int[256];	// The ARGB colours, in the order they were first seen.
+		private final byte[] paletteBytes = new byte[256 * 3];
+		private final byte[] alphaBytes = new byte[256];
+
+		void write(int[] pixels, int width, int height, OutputStream out) throws IOException {
+			int colors = packIndexed(pixels, width, height);
+			boolean indexed = colors > 0;
+			if(!indexed)
+				packRGBA(pixels, width, height);
+			int length = (1 + width * (indexed ? 1 : 4)) * height;
+			int compressedLength = deflate(length);
+
+			putInt(header, 0, width);
+			putInt(header, 4, height);
+			header[8] = 8;					// Bits per sample.
+			header[9] = (byte) (indexed ? 3 : 6);	// Palette or RGBA.
+			header[10] = 0;					// Deflate.
+			header[11] = 0;					// Adaptive filtering.
+			header[12] = 0;					// Not interlaced.
+
+			out.write(PNG_SIGNATURE);
+			writeChunk(out, "IHDR", header, header.length);
+			if(indexed) {
+				for(int c = 0; c < colors; c++) {
+					paletteBytes[c * 3] = (byte) (palette[c] >> 16);
+					paletteBytes[c * 3 + 1] = (byte) (palette[c] >> 8);
+					paletteBytes[c * 3 + 2] = (byte) palette[c];
+					alphaBytes[c] = (byte) (palette[c] >> 24);
+				}
+				writeChunk(out, "PLTE", paletteBytes, colors * 3);
+				writeChunk(out, "tRNS", alphaBytes, colors);
+			}
+			writeChunk(out, "IDAT", compressed, compressedLength);
+			writeChunk(out, "IEND", header, 0);
+		}
+
+		/**
+		 * Turns the pixels into rows of palette indices. A row that is the same as the row above
+		 * (most rows of a box) is written with the Up filter, which makes it all zeros.
+		 * @return The number of colours, or 0 if there are too many for a palette.
+		 */
+		private int packIndexed(int[] pixels, int width, int height) {
+			int rowLength = 1 + width;
+			ensureRaw(rowLength * height);
+
+			int colors = 0;
+			int last = 0;	// The palette index of the last colour seen, which is usually the next one too.
+			for(int y = 0; y < height; y++) {
+				int i = y * width;
+				int r = y * rowLength;
+				if(y > 0 && Arrays.equals(pixels, i - width, i, pixels, i, i + width)) {
+					raw[r] = 2; // Up.
+					Arrays.fill(raw, r + 1, r + rowLength, (byte) 0);
+					continue;
+				}
+				raw[r++] = 0; // None.
+				for(int end = i + width; i < end; i++) {
+					int argb = pixels[i];
+					if(colors == 0 || palette[last] != argb) {
+						last = 0;
+						while(last < colors && palette[last] != argb)
+							last++;
+						if(last == colors) {
+							if(colors == palette.length)
+								return 0;
+							palette[colors++] = argb;
+						}
+					}
+					raw[r++] = (byte) last;
+				}
+			}
+			return colors;
+		}
+
+		private void packRGBA(int[] pixels, int width, int height) {
+			ensureRaw((1 + width * 4) * height);
+			for(int y = 0, r = 0; y < height; y++) {
+				raw[r++] = 0; // None.
+				for(int i = y * width, end = i + width; i < end; i++) {
+					int argb = pixels[i];
+					raw[r++] = (byte) (argb >> 16);
+					raw[r++] = (byte) (argb >> 8);
+					raw[r++] = (byte) argb;
+					raw[r++] = (byte) (argb >> 24);
+				}
+			}
+		}
+
+		private void ensureRaw(int length) {
+			if(raw.length < length) {
+				raw = new byte[length];
+				compressed = new byte[length / 4 + 64];
+			}
+		}
+
+		/**
+		 * Deflates the first length bytes of raw into compressed.
+		 * @return The number of compressed bytes.
+		 */
+		private int deflate(int length) {
+			deflater.reset();
+			deflater.setInput(raw, 0, length);
+			deflater.finish();
+			int compressedLength = 0;
+			while(!deflater.finished()) {
+				if(compressedLength == compressed.length)
+					compressed = Arrays.copyOf(compressed, compressed.length * 2);
+				compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+			}
+			return compressedLength;
+		}
+
+		private void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+			byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+			putInt(number, 0, length);
+			out.write(number);
+			out.write(typeBytes);
+			out.write(data, 0, length);
+
+			crc.reset();
+			crc.update(typeBytes);
+			crc.update(data, 0, length);
+			putInt(number, 0, (int) crc.getValue());
+			out.write(number);
+		}
+
+		private static void putInt(byte[] bytes, int at, int value) {
+			bytes[at] = (byte) (value >> 24);
+			bytes[at + 1] = (byte) (value >> 16);
+			bytes[at + 2] = (byte) (value >> 8);
+			bytes[at + 3] = (byte) value;
+		}
+	}
+}
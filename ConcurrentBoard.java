@@ -0,0 +1,223 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Minesweeper board that can be cleared by several players at the same time.
+ *
+ * Every box is packed into a single int word holding its mine count, whether it has a mine
+ * and its BoxState. State changes (HIDDEN -> SHOWN, HIDDEN <-> FLAGGED) are done with a
+ * compare-and-set on that word, so when two players reveal the same box only one of them
+ * wins and the box is counted once. Cascades from different players may overlap freely.
+ * Like Board, the words are padded with a box that is never hidden all the way around the
+ * board, so cascades use the same neighbour offsets for every box.
+ *
+ * The shown/flag counters are striped (LongAdder) so players don't fight over one counter.
+ * Their values are exact once all the moves in flight have returned.
+ *
+ * @author martin
+ *
+ */
+public class ConcurrentBoard {
+
+	/** Layout of a box word. **/
+
+	private static final int COUNT_MASK = 0xF;				// Bits 0-3: the number of mines around the box.
+	private static final int MINE_BIT = 1 << 4;				// Bit 4: the box has a mine.
+	private static final int STATE_SHIFT = 5;				// Bits 5-6: the ordinal of the BoxState.
+	private static final int STATE_MASK = 3 << STATE_SHIFT;
+
+	private static final int HIDDEN = Minesweeper.BoxState.HIDDEN.ordinal() << STATE_SHIFT;
+	private static final int SHOWN = Minesweeper.BoxState.SHOWN.ordinal() << STATE_SHIFT;
+	private static final int FLAGGED = Minesweeper.BoxState.FLAGGED.ordinal() << STATE_SHIFT;
+
+	private final int rows;					// The number of rows on the board.
+	private final int columns;				// The number of columns on the board.
+	private final int numberOfMines;		// The number of mines on the board.
+	private final int stride;				// The length of a padded row.
+	private final int[] neighbours;			// The offsets of the eight boxes around a box.
+
+	private final AtomicIntegerArray boxes;	// One packed word per box, row by row, padded.
+
+	private final LongAdder boxesShown = new LongAdder();	// The number of boxes without a mine in the shown state.
+	private final LongAdder flagsPlaced = new LongAdder();	// The number of flags placed.
+	private volatile boolean hitMine;						// Represents if any player has clicked a mine.
+
+	/**
+	 * Creates a board with every box hidden.
+	 * @param mines Where the mines are placed, indexed [row][column].
+	 */
+	public ConcurrentBoard(boolean[][] mines) {
+		rows = mines.length;
+		columns = mines[0].length;
+		stride = columns + 2;
+		neighbours = Board.neighbourOffsets(stride);
+		boxes = new AtomicIntegerArray((rows + 2) * stride);
+		for(int i = 0; i < boxes.length(); i++)
+			boxes.set(i, SHOWN); // Padding.
+
+		byte[][] counts = MineCounter.countAll(mines);
+		int count = 0;
+		for(int row = 0; row < rows; row++) {
+			for(int col = 0; col < columns; col++) {
+				int word = HIDDEN | counts[row][col];
+				if(mines[row][col]) {
+					word |= MINE_BIT;
+					count++;
+				}
+				boxes.set(index(row, col), word);
+			}
+		}
+		numberOfMines = count;
+	}
+
+	/**
+	 * Reveals a box. If the box has no mines around it, the hidden boxes around it are
+	 * revealed too, and so on (cascade). Safe to call from any number of threads at once.
+	 * @param row The row.
+	 * @param col The column.
+	 * @return The number of boxes this call revealed. Boxes revealed by other players are not counted.
+	 */
+	public int reveal(int row, int col) {
+		int[] stack = new int[16];
+		int top = 0;
+		int revealed = 0;
+		int shown = 0; // The boxes revealed without a mine.
+
+		stack[top++] = index(row, col);
+		while(top > 0) {
+			int index = stack[--top];
+			int word = boxes.get(index);
+
+			// Only the player whose CAS moves the box out of HIDDEN gets to count it.
+			while((word & STATE_MASK) == HIDDEN) {
+				if(boxes.compareAndSet(index, word, (word & ~STATE_MASK) | SHOWN))
+					break;
+				word = boxes.get(index);
+			}
+			if((word & STATE_MASK) != HIDDEN)
+				continue;
+
+			revealed++;
+			if((word & MINE_BIT) != 0) {
+				hitMine = true;
+				continue;
+			}
+			shown++;
+			if((word & COUNT_MASK) != 0)
+				continue;
+
+			// No mines around: push the hidden neighbours.
+			for(int offset : neighbours) {
+				int neighbour = index + offset;
+				if((boxes.get(neighbour) & STATE_MASK) != HIDDEN)
+					continue;
+				if(top == stack.length)
+					stack = Arrays.copyOf(stack, top * 2);
+				stack[top++] = neighbour;
+			}
+		}
+
+		if(shown > 0)
+			boxesShown.add(shown);
+		return revealed;
+	}
+
+	/**
+	 * Flags a hidden box, or unflags a flagged one. Safe to call from any number of threads at once.
+	 * @param row The row.
+	 * @param col The column.
+	 * @return True if this call changed the box.
+	 */
+	public boolean toggleFlag(int row, int col) {
+		int index = index(row, col);
+		while(true) {
+			int word = boxes.get(index);
+			int state = word & STATE_MASK;
+			int next;
+			if(state == HIDDEN)
+				next = (word & ~STATE_MASK) | FLAGGED;
+			else if(state == FLAGGED)
+				next = (word & ~STATE_MASK) | HIDDEN;
+			else
+				return false;
+
+			if(boxes.compareAndSet(index, word, next)) {
+				if(state == HIDDEN)
+					flagsPlaced.increment();
+				else
+					flagsPlaced.decrement();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of a box in the padded words.
+	 */
+	private int index(int row, int col) {
+		return (row + 1) * stride + col + 1;
+	}
+
+	/**
+	 * Returns the state of a box.
+	 */
+	public Minesweeper.BoxState getState(int row, int col) {
+		int word = boxes.get(index(row, col));
+		return Minesweeper.BoxState.values()[(word & STATE_MASK) >>> STATE_SHIFT];
+	}
+
+	/**
+	 * Returns true if the box has a mine.
+	 */
+	public boolean hasMine(int row, int col) {
+		return (boxes.get(index(row, col)) & MINE_BIT) != 0;
+	}
+
+	/**
+	 * Returns the number of mines around a box.
+	 */
+	public int getMineCount(int row, int col) {
+		return boxes.get(index(row, col)) & COUNT_MASK;
+	}
+
+	/**
+	 * Returns the number of boxes without a mine in the shown state.
+	 */
+	public int getBoxesShown() {
+		return (int) boxesShown.sum();
+	}
+
+	/**
+	 * Returns the number of flags placed.
+	 */
+	public int getFlagsPlaced() {
+		return (int) flagsPlaced.sum();
+	}
+
+	/**
+	 * Returns true if any player has clicked a mine.
+	 */
+	public boolean hitMine() {
+		return hitMine;
+	}
+
+	/**
+	 * Returns true once every box without a mine has been shown.
+	 */
+	public boolean isCleared() {
+		return !hitMine && getBoxesShown() == rows * columns - numberOfMines;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public int getNumberOfMines() {
+		return numberOfMines;
+	}
+}
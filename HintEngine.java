@@ -0,0 +1,589 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the safest box to click next, on a background thread and within a time budget.
+ *
+ * The search is "anytime": it starts with cheap rules that find boxes which are certainly safe,
+ * then tries pairs of numbers, and only then works out mine probabilities by going through
+ * every arrangement of mines around the numbers. Whenever the budget runs out it stops and
+ * answers with the best box found so far.
+ *
+ * findHint() runs the same search on the calling thread, limited by a number of enumeration
+ * steps instead of a time, so the same position (and the same table contents) always gets the
+ * same answer, however fast the machine is. That is for tools that must be reproducible.
+ *
+ * Flags are the player's guesses, not proof, so the search treats flagged boxes as hidden: a
+ * box is only called safe if it is safe whichever flags are wrong. A flagged box is never
+ * suggested.
+ *
+ * Answers are kept per board hash (Board.getHash()), so asking again before the board changes,
+ * or after undoing back to the same position, costs nothing.
+ *
+ * Each group of connected frontier boxes that is enumerated is also remembered in a
+ * TranspositionTable, keyed by a Zobrist hash of the group's pattern placed relative to its
+ * first box. The same pattern anywhere on any board, in this game or a later one, is then
+ * looked up instead of enumerated again. The table can be shared by several engines.
+ *
+ * @author martin
+ *
+ */
+public class HintEngine {
+
+	/**
+	 * A suggested box and how likely it is to have a mine.
+	 */
+	public static class Hint {
+		public final int row;
+		public final int col;
+		public final double mineProbability; // 0 if the box is certainly safe.
+
+		Hint(int row, int col, double mineProbability) {
+			this.row = row;
+			this.col = col;
+			this.mineProbability = mineProbability;
+		}
+	}
+
+	private static final int MIN_CACHED_GROUP = 6; // Smaller groups are quicker to enumerate than to look up.
+	private static final long TABLE_BYTES = 16L * 1024 * 1024; // The memory budget of an engine's own table.
+
+	private final long budgetNanos;			// How long a search may take.
+	private final ExecutorService executor;	// The thread the searches run on.
+	private final TranspositionTable table;	// Solved frontier groups.
+
+	private Board cachedBoard;				// The board of the last request.
+	private long cachedHash;				// The hash of the board at the last request.
+	private CompletableFuture<Hint> cachedHint;
+
+	/**
+	 * Creates a hint engine with its own transposition table.
+	 * @param budgetMillis How long a search may take, in milliseconds.
+	 */
+	public HintEngine(long budgetMillis) {
+		this(budgetMillis, new TranspositionTable(TABLE_BYTES));
+	}
+
+	/**
+	 * Creates a hint engine.
+	 * @param budgetMillis How long a search may take, in milliseconds.
+	 * @param table Where solved frontier groups are remembered. It may be shared with other engines.
+	 */
+	public HintEngine(long budgetMillis, TranspositionTable table) {
+		this.table = table;
+		budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+		executor = Executors.newSingleThreadExecutor(r -> {
+			// The enumeration recurses once per frontier box, so give it a big stack.
+			Thread thread = new Thread(null, r, "hint", 64L * 1024 * 1024);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Asks for a hint. Must be called from the thread that makes the moves on the board,
+	 * since it copies what is visible before handing the search to the background thread.
+	 * @param board The board.
+	 * @return The hint, completed with null if there is nothing to suggest.
+	 */
+	public CompletableFuture<Hint> requestHint(Board board) {
+		if(board == cachedBoard && board.getHash() == cachedHash)
+			return cachedHint;
+
+		Search search = newSearch(board, System.nanoTime() + budgetNanos, Long.MAX_VALUE, table);
+		cachedBoard = board;
+		cachedHash = board.getHash();
+		cachedHint = CompletableFuture.supplyAsync(search::run, executor);
+		return cachedHint;
+	}
+
+	/**
+	 * Finds a hint on the calling thread, without a time budget. Groups that would take more
+	 * than maxNodes enumeration steps (in all) keep their rough estimate, so the answer only
+	 * depends on the board and the table. The enumeration recurses once per frontier box, so
+	 * big boards need a thread with a big stack.
+	 * @param board The board.
+	 * @param table Where solved frontier groups are remembered.
+	 * @param maxNodes How many enumeration steps the search may take.
+	 * @return The hint, or null if there is nothing to suggest.
+	 */
+	public static Hint findHint(Board board, TranspositionTable table, long maxNodes) {
+		return newSearch(board, Long.MAX_VALUE, maxNodes, table).run();
+	}
+
+	/**
+	 * Copies what is visible on a board into a new search.
+	 */
+	private static Search newSearch(Board board, long deadline, long maxNodes, TranspositionTable table) {
+		return new Search(board.getVisible(), board.getColumns() + 2, board.getNeighbourOffsets(), board.getNumberOfMines(),
+				deadline, maxNodes, table);
+	}
+
+	/**
+	 * Returns the table of solved frontier groups, for its hit rate and memory use.
+	 */
+	public TranspositionTable getTranspositionTable() {
+		return table;
+	}
+
+	/**
+	 * One search over a copy of the visible board, with the flagged boxes hidden again. Boxes
+	 * are indexed like Board's padded arrays.
+	 */
+	private static class Search {
+
+		private final byte[] visible;
+		private final int stride;
+		private final int[] neighbours;
+		private final int mines;			// The number of mines on the board.
+		private final long deadline;
+		private final long maxNodes;		// How many enumeration steps the search may take.
+		private final TranspositionTable table;
+
+		private final boolean[] flagged;	// Boxes the player flagged, which are never suggested.
+		private final boolean[] knownMine;	// Hidden boxes the rules proved to have a mine.
+		private final int[] constraintAt;	// The constraint of each shown number, or -1.
+		private final ArrayList<int[]> hiddenAround = new ArrayList<>(); // The hidden boxes around each constraint.
+		private final ArrayList<Integer> constraintBox = new ArrayList<>();
+		private int[] constraintStamp;		// The last group hashed with each constraint.
+
+		private long nodes;					// Enumeration steps, to check the clock every so often.
+
+		Search(byte[] visible, int stride, int[] neighbours, int mines, long deadline, long maxNodes, TranspositionTable table) {
+			this.visible = visible;
+			this.stride = stride;
+			this.neighbours = neighbours;
+			this.mines = mines;
+			this.deadline = deadline;
+			this.maxNodes = maxNodes;
+			this.table = table;
+			flagged = new boolean[visible.length];
+			for(int box = 0; box < visible.length; box++) {
+				if(visible[box] == Board.VISIBLE_FLAGGED) {
+					flagged[box] = true;
+					visible[box] = Board.VISIBLE_HIDDEN;
+				}
+			}
+			knownMine = new boolean[visible.length];
+			constraintAt = new int[visible.length];
+			Arrays.fill(constraintAt, -1);
+		}
+
+		private boolean timeUp() {
+			return nodes > maxNodes || System.nanoTime() > deadline;
+		}
+
+		private Hint hint(int box, double mineProbability) {
+			return new Hint(box / stride - 1, box % stride - 1, mineProbability);
+		}
+
+		/**
+		 * Returns the number of mines still to be found around a constraint: its number, less
+		 * the known mines around it.
+		 */
+		private int remaining(int c) {
+			int box = constraintBox.get(c);
+			int mine = visible[box];
+			for(int offset : neighbours) {
+				if(knownMine[box + offset])
+					mine--;
+			}
+			return mine;
+		}
+
+		/**
+		 * Returns the first box that isn't flagged, or -1.
+		 */
+		private int firstUnflagged(int[] boxes) {
+			for(int box : boxes) {
+				if(!flagged[box])
+					return box;
+			}
+			return -1;
+		}
+
+		/**
+		 * Returns the hidden boxes around a constraint that aren't known mines.
+		 */
+		private int[] unknown(int c) {
+			int[] hidden = hiddenAround.get(c);
+			int count = 0;
+			for(int box : hidden) {
+				if(!knownMine[box])
+					count++;
+			}
+			int[] result = new int[count];
+			count = 0;
+			for(int box : hidden) {
+				if(!knownMine[box])
+					result[count++] = box;
+			}
+			return result;
+		}
+
+		Hint run() {
+			// Every shown number with hidden boxes around it is a constraint.
+			boolean anyHidden = false;
+			for(int box = 0; box < visible.length; box++) {
+				if(visible[box] == Board.VISIBLE_HIDDEN && !flagged[box])
+					anyHidden = true;
+				if(visible[box] <= 0)
+					continue;
+
+				int count = 0;
+				int[] hidden = new int[neighbours.length];
+				for(int offset : neighbours) {
+					if(visible[box + offset] == Board.VISIBLE_HIDDEN)
+						hidden[count++] = box + offset;
+				}
+				if(count > 0) {
+					constraintAt[box] = constraintBox.size();
+					constraintBox.add(box);
+					hiddenAround.add(Arrays.copyOf(hidden, count));
+				}
+			}
+			if(!anyHidden)
+				return null;
+
+			Hint hint = applyRules();
+			if(hint == null && !timeUp())
+				hint = applySubsetRule();
+			if(hint == null)
+				hint = enumerate();
+			return hint;
+		}
+
+		/**
+		 * Single-number rules: a number with all its mines found makes the rest safe, and a
+		 * number with as many hidden boxes as missing mines makes them all mines.
+		 * @return A safe box, or null.
+		 */
+		private Hint applyRules() {
+			boolean changed = true;
+			while(changed && !timeUp()) {
+				changed = false;
+				for(int c = 0; c < constraintBox.size(); c++) {
+					int[] unknown = unknown(c);
+					if(unknown.length == 0)
+						continue;
+					int mine = remaining(c);
+					if(mine == 0 && firstUnflagged(unknown) >= 0)
+						return hint(firstUnflagged(unknown), 0);
+					if(mine == unknown.length) {
+						for(int box : unknown)
+							knownMine[box] = true;
+						changed = true;
+					}
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Pairs of numbers: if the unknown boxes of A are all around B too and both are missing
+		 * the same number of mines, B's other unknown boxes are safe.
+		 * @return A safe box, or null.
+		 */
+		private Hint applySubsetRule() {
+			for(int a = 0; a < constraintBox.size(); a++) {
+				if(timeUp())
+					return null;
+				int[] unknownA = unknown(a);
+				if(unknownA.length == 0)
+					continue;
+				int mineA = remaining(a);
+
+				// Any B sharing an unknown box with A is a number next to one of A's unknown boxes.
+				for(int boxA : unknownA) {
+					for(int offset : neighbours) {
+						int b = constraintAt[boxA + offset];
+						if(b < 0 || b == a || remaining(b) != mineA)
+							continue;
+						int[] unknownB = unknown(b);
+						if(unknownB.length > unknownA.length && containsAll(unknownB, unknownA)) {
+							for(int box : unknownB) {
+								if(!contains(unknownA, box) && !flagged[box])
+									return hint(box, 0);
+							}
+						}
+					}
+				}
+			}
+			return null;
+		}
+
+		private static boolean contains(int[] boxes, int box) {
+			for(int b : boxes) {
+				if(b == box)
+					return true;
+			}
+			return false;
+		}
+
+		private static boolean containsAll(int[] boxes, int[] subset) {
+			for(int box : subset) {
+				if(!contains(boxes, box))
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Works out mine probabilities by enumerating every arrangement of mines that fits
+		 * the numbers, one group of connected frontier boxes at a time. Groups are treated as
+		 * independent and the total number of mines is only used for the boxes away from the
+		 * numbers. Groups not finished before the deadline or the step limit keep a rough local
+		 * estimate.
+		 * @return The box with the lowest probability of a mine.
+		 */
+		private Hint enumerate() {
+			// The frontier: unknown boxes around constraints, with a local estimate to start from.
+			int[] variableAt = new int[visible.length];
+			Arrays.fill(variableAt, -1);
+			ArrayList<Integer> frontier = new ArrayList<>();
+			ArrayList<Double> probability = new ArrayList<>();
+			for(int c = 0; c < constraintBox.size(); c++) {
+				int[] unknown = unknown(c);
+				double estimate = unknown.length == 0 ? 0 : (double) remaining(c) / unknown.length;
+				for(int box : unknown) {
+					if(variableAt[box] < 0) {
+						variableAt[box] = frontier.size();
+						frontier.add(box);
+						probability.add(estimate);
+					}
+					else {
+						probability.set(variableAt[box], Math.max(probability.get(variableAt[box]), estimate));
+					}
+				}
+			}
+
+			// Enumerate each connected group while there is time.
+			boolean[] done = new boolean[frontier.size()];
+			for(int v = 0; v < frontier.size() && !timeUp(); v++) {
+				if(done[v])
+					continue;
+				int[] group = collectGroup(v, frontier, variableAt, done);
+				double[] exact = solveGroup(group, frontier, variableAt);
+				if(exact == null)
+					break;
+				for(int i = 0; i < group.length; i++) {
+					probability.set(group[i], exact[i]);
+					if(exact[i] == 0 && !flagged[frontier.get(group[i])])
+						return hint(frontier.get(group[i]), 0);
+				}
+			}
+
+			// The best frontier box.
+			int best = -1;
+			double bestProbability = 2;
+			double expectedFrontierMines = 0;
+			for(int v = 0; v < frontier.size(); v++) {
+				expectedFrontierMines += probability.get(v);
+				if(probability.get(v) < bestProbability && !flagged[frontier.get(v)]) {
+					bestProbability = probability.get(v);
+					best = frontier.get(v);
+				}
+			}
+
+			// The boxes away from the numbers share the mines the frontier doesn't take.
+			int interior = -1;
+			int interiorCount = 0;
+			int knownMines = 0;
+			for(int box = 0; box < visible.length; box++) {
+				if(knownMine[box])
+					knownMines++;
+				else if(visible[box] == Board.VISIBLE_HIDDEN && variableAt[box] < 0) {
+					if(interior < 0 && !flagged[box])
+						interior = box;
+					interiorCount++;
+				}
+			}
+			if(interior >= 0) {
+				// The expected frontier mines are only an estimate, so this is never proof of a safe box.
+				double interiorProbability = Math.max(Double.MIN_VALUE, (mines - knownMines - expectedFrontierMines) / interiorCount);
+				if(interiorProbability < bestProbability)
+					return hint(interior, Math.min(1, interiorProbability));
+			}
+			return best < 0 ? null : hint(best, bestProbability);
+		}
+
+		/**
+		 * Collects the frontier boxes connected to a box through shared constraints.
+		 * @return The variables of the group, in the order they were reached.
+		 */
+		private int[] collectGroup(int start, ArrayList<Integer> frontier, int[] variableAt, boolean[] done) {
+			int[] group = new int[frontier.size()];
+			int size = 0;
+			group[size++] = start;
+			done[start] = true;
+			for(int i = 0; i < size; i++) {
+				int box = frontier.get(group[i]);
+				for(int offset : neighbours) {
+					int c = constraintAt[box + offset];
+					if(c < 0)
+						continue;
+					for(int other : hiddenAround.get(c)) {
+						int v = variableAt[other];
+						if(v >= 0 && !done[v]) {
+							done[v] = true;
+							group[size++] = v;
+						}
+					}
+				}
+			}
+			return Arrays.copyOf(group, size);
+		}
+
+		/**
+		 * Looks a group up in the transposition table, or enumerates it and remembers it.
+		 *
+		 * The key is the Zobrist hash of the group's pattern: its boxes and the numbers around
+		 * them (how many mines each is still missing), placed relative to the group's first box
+		 * in row order. The answer only depends on that pattern, wherever it is on the board.
+		 * The table keeps the probabilities in row order too.
+		 * @return The probability of a mine in each box of the group, or null if time or steps ran out.
+		 */
+		private double[] solveGroup(int[] group, ArrayList<Integer> frontier, int[] variableAt) {
+			int n = group.length;
+			if(n < MIN_CACHED_GROUP)
+				return enumerateGroup(group, frontier, variableAt);
+
+			// The group in row order: the box in the high bits, its place in the group in the low.
+			long[] order = new long[n];
+			for(int i = 0; i < n; i++)
+				order[i] = (long) frontier.get(group[i]) << 32 | i;
+			Arrays.sort(order);
+
+			if(constraintStamp == null)
+				constraintStamp = new int[constraintBox.size()];
+			int stamp = group[0] + 1;
+			int first = (int) (order[0] >>> 32);
+			int firstRow = first / stride;
+			int firstCol = first % stride;
+
+			long hash = 0;
+			for(long entry : order) {
+				int box = (int) (entry >>> 32);
+				hash ^= Zobrist.key(box / stride - firstRow, box % stride - firstCol, Board.VISIBLE_HIDDEN);
+				for(int offset : neighbours) {
+					int c = constraintAt[box + offset];
+					if(c < 0 || constraintStamp[c] == stamp)
+						continue;
+					constraintStamp[c] = stamp;
+					int at = constraintBox.get(c);
+					hash ^= Zobrist.key(at / stride - firstRow, at % stride - firstCol, remaining(c));
+				}
+			}
+
+			double[] exact = new double[n];
+			double[] known = table.get(hash);
+			if(known != null && known.length == n) {
+				for(int k = 0; k < n; k++)
+					exact[(int) order[k]] = known[k];
+				return exact;
+			}
+
+			exact = enumerateGroup(group, frontier, variableAt);
+			if(exact != null) {
+				double[] solved = new double[n];
+				for(int k = 0; k < n; k++)
+					solved[k] = exact[(int) order[k]];
+				table.put(hash, solved);
+			}
+			return exact;
+		}
+
+		/** Enumeration state for one group. **/
+
+		private int[] groupBoxes;			// The boxes of the group.
+		private int[][] constraintsOf;		// The constraints around each box of the group.
+		private int[] placed;				// Mines placed so far around each constraint.
+		private int[] open;					// Boxes not yet decided around each constraint.
+		private int[] need;					// Mines missing around each constraint.
+		private boolean[] isMine;			// The current arrangement.
+		private long solutions;
+		private long[] mineSolutions;		// Arrangements with a mine in each box.
+
+		/**
+		 * Counts the arrangements of mines in a group that fit every number around it.
+		 * @return The probability of a mine in each box of the group, or null if time or steps ran out.
+		 */
+		private double[] enumerateGroup(int[] group, ArrayList<Integer> frontier, int[] variableAt) {
+			int n = group.length;
+			groupBoxes = new int[n];
+			constraintsOf = new int[n][];
+			placed = new int[constraintBox.size()];
+			open = new int[constraintBox.size()];
+			need = new int[constraintBox.size()];
+			isMine = new boolean[n];
+			solutions = 0;
+			mineSolutions = new long[n];
+
+			for(int i = 0; i < n; i++) {
+				int box = frontier.get(group[i]);
+				groupBoxes[i] = box;
+				int[] around = new int[neighbours.length];
+				int count = 0;
+				for(int offset : neighbours) {
+					int c = constraintAt[box + offset];
+					if(c >= 0) {
+						around[count++] = c;
+						open[c]++;
+						need[c] = remaining(c);
+					}
+				}
+				constraintsOf[i] = Arrays.copyOf(around, count);
+			}
+
+			if(!search(0) || solutions == 0)
+				return null;
+
+			double[] result = new double[n];
+			for(int i = 0; i < n; i++)
+				result[i] = (double) mineSolutions[i] / solutions;
+			return result;
+		}
+
+		/**
+		 * Tries both values for box k of the group, then goes on with the next box.
+		 * @return False if time or steps ran out.
+		 */
+		private boolean search(int k) {
+			if(++nodes > maxNodes || (nodes & 1023) == 0 && timeUp())
+				return false;
+
+			if(k == groupBoxes.length) {
+				solutions++;
+				for(int i = 0; i < isMine.length; i++) {
+					if(isMine[i])
+						mineSolutions[i]++;
+				}
+				return true;
+			}
+
+			for(int value = 0; value <= 1; value++) {
+				isMine[k] = value == 1;
+				boolean fits = true;
+				for(int c : constraintsOf[k]) {
+					open[c]--;
+					placed[c] += value;
+					if(placed[c] > need[c] || placed[c] + open[c] < need[c])
+						fits = false;
+				}
+				boolean inTime = !fits || search(k + 1);
+				for(int c : constraintsOf[k]) {
+					open[c]++;
+					placed[c] -= value;
+				}
+				if(!inTime)
+					return false;
+			}
+			isMine[k] = false;
+			return true;
+		}
+	}
+}
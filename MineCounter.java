@@ -0,0 +1,145 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+
+/**
+ * Counts the mines around every box of a board in one go.
+ *
+ * Instead of checking the neighbours of each box one at a time, a whole row is done as a sum
+ * of shifted rows: first the three rows above, on and below the row are added together, then
+ * that sum is added to itself shifted one box left and one box right, and the box's own mine
+ * is taken away. The board is padded with an empty box all the way around, so there are no edge
+ * cases.
+ *
+ * When VectorMineCounter (in vector/) was built and is on the class path, and the JVM was started
+ * with --add-modules jdk.incubator.vector, the rows are added with the Vector API. Otherwise a
+ * plain loop is used.
+ *
+ * @author martin
+ *
+ */
+public class MineCounter {
+
+	// VectorMineCounter.countRow(), or null if it can't be used.
+	private static final MethodHandle VECTOR_COUNT_ROW = findVectorCountRow();
+
+	/**
+	 * Looks up VectorMineCounter.countRow() by name, so this class builds without it.
+	 * @return The method, or null if the class or the Vector API is missing.
+	 */
+	private static MethodHandle findVectorCountRow() {
+		if(ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+			return null;
+		try {
+			MethodType type = MethodType.methodType(void.class, ByteBuffer.class, int.class, int.class, int.class, byte[].class);
+			return MethodHandles.lookup().findStatic(Class.forName("VectorMineCounter"), "countRow", type);
+		}
+		catch(ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns true if the rows are added with the Vector API.
+	 */
+	static boolean hasVectorAPI() {
+		return VECTOR_COUNT_ROW != null;
+	}
+
+	/**
+	 * Counts the mines around every box.
+	 * @param mines Where the mines are placed, indexed [row][column].
+	 * @return The number of mines around each box, indexed [row][column].
+	 */
+	public static byte[][] countAll(boolean[][] mines) {
+		return countAll(mines, hasVectorAPI());
+	}
+
+	/**
+	 * Counts the mines around every box.
+	 * @param mines Where the mines are placed, indexed [row][column].
+	 * @param useVectorAPI True to add the rows with the Vector API. hasVectorAPI() must be true.
+	 * @return The number of mines around each box, indexed [row][column].
+	 */
+	static byte[][] countAll(boolean[][] mines, boolean useVectorAPI) {
+		int rows = mines.length;
+		int columns = mines[0].length;
+		int stride = columns + 2;
+		int size = (rows + 2) * stride;
+
+		// The padded mines, then the padded counts.
+		ByteBuffer boxes = ByteBuffer.allocate(2 * size);
+		for(int row = 0; row < rows; row++) {
+			for(int col = 0; col < columns; col++)
+				boxes.put((row + 1) * stride + col + 1, (byte) (mines[row][col] ? 1 : 0));
+		}
+		countAll(boxes, 0, size, rows, columns, useVectorAPI);
+
+		byte[][] counts = new byte[rows][columns];
+		for(int row = 0; row < rows; row++)
+			boxes.get(size + (row + 1) * stride + 1, counts[row]);
+		return counts;
+	}
+
+	/**
+	 * Counts the mines around every box of a board kept in padded flat arrays, like Board's:
+	 * box (row, col) is at (row + 1) * (columns + 2) + col + 1, with an empty box all the way
+	 * around the board. The arrays may be on the heap or not.
+	 * @param boxes Holds both arrays.
+	 * @param minesAt Where the mines start: 1 where a box has a mine, 0 where it hasn't (and in
+	 * the padding).
+	 * @param countsAt Where the counts go. The padding is left as it is.
+	 * @param rows The number of rows on the board.
+	 * @param columns The number of columns on the board.
+	 */
+	public static void countAll(ByteBuffer boxes, int minesAt, int countsAt, int rows, int columns) {
+		countAll(boxes, minesAt, countsAt, rows, columns, hasVectorAPI());
+	}
+
+	static void countAll(ByteBuffer boxes, int minesAt, int countsAt, int rows, int columns, boolean useVectorAPI) {
+		int stride = columns + 2;
+		byte[] columnSums = new byte[stride];
+		for(int row = 0; row < rows; row++) {
+			int above = minesAt + row * stride;
+			int out = countsAt + (row + 1) * stride;
+			if(useVectorAPI)
+				vectorCountRow(boxes, above, out, stride, columnSums);
+			else
+				countRow(boxes, above, out, stride, columnSums);
+		}
+	}
+
+	/**
+	 * Counts one row with VectorMineCounter.
+	 */
+	private static void vectorCountRow(ByteBuffer boxes, int above, int out, int stride, byte[] columnSums) {
+		try {
+			VECTOR_COUNT_ROW.invokeExact(boxes, above, out, stride, columnSums);
+		}
+		catch(RuntimeException | Error e) {
+			throw e;
+		}
+		catch(Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Counts one row with plain loops.
+	 * @param boxes The padded mines and counts.
+	 * @param above Where the padded row of mines above the one being counted starts.
+	 * @param out Where the padded row of counts being filled starts.
+	 * @param stride The length of a padded row.
+	 * @param columnSums Scratch space, as long as a padded row.
+	 */
+	static void countRow(ByteBuffer boxes, int above, int out, int stride, byte[] columnSums) {
+		int middle = above + stride;
+		int below = middle + stride;
+		for(int c = 0; c < stride; c++)
+			columnSums[c] = (byte) (boxes.get(above + c) + boxes.get(middle + c) + boxes.get(below + c));
+
+		for(int c = 0, columns = stride - 2; c < columns; c++)
+			boxes.put(out + c + 1, (byte) (columnSums[c] + columnSums[c + 1] + columnSums[c + 2] - boxes.get(middle + c + 1)));
+	}
+}
@@ -1,4 +1,7 @@
+import java.util.Random;
+
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
@@ -22,10 +25,15 @@ import javafx.stage.Stage;
 /**
  * This program plays the game Minesweeper. 
  * Mines are placed randomly on the board depending on the difficulty(beginner, intermediate, expert). 
+ * The mines are placed when the first box is clicked, never in or next to that box, so the first click is safe.
  * Squares tell you how many mines are around shown square.
  * The player wins when they have cleared all the boxes without mines and have flagged the boxes with mines.
  * When a player flags a box(shift + left-click) it becomes immune to normal clicks.
  * A player can unflag a box by shift + left-clicking it again.
+ * Clicking a box with no mines around it also shows the boxes around it.
+ * Clicking a shown number with that many flags around it shows the other boxes around it(chording).
+ * Moves can be taken back and replayed with Undo/Redo in the tool bar(practice mode).
+ * Hint in the tool bar outlines the box least likely to have a mine.
  * 
  * There are three difficulties the player can choose from in the tool bar.
  * 
@@ -41,6 +49,7 @@ public class Minesweeper extends Application {
 	private static int ROWS;		  	// The number of rows on the board.
 	private static int COLUMNS;		  	// The number of columns on the board.
 	private static int NUMBER_OF_MINES; // The number of mines on the board.
+	private static final long HINT_BUDGET_MILLIS = 5; // How long a hint may take.
 	
 	enum BoxState { HIDDEN, SHOWN, FLAGGED }; 			// Represents the possible states a box can be in.
 	enum Difficulty { BEGINNER, INTERMEDIATE, EXPERT }; // Represents the difficulties.
@@ -49,22 +58,26 @@ public class Minesweeper extends Application {
 	private double[] rowBounds;	   // The bounds for each row.	
 	private double[] columnBounds; // The bounds for each column.
 	
-	private boolean[][] mines; 	// 2D array representing where the mines are placed.
-	private BoxState[][] state; // 2D array representing what state the box is in.
+	private Board board;		  // The mines and the state of every box.
+	private Random random = new Random(); // Where the mines go.
+	private BoardHistory history; // Every version of the box states, for undo/redo.
 	
 	private GraphicsContext g; 		// A graphics context for drawing on the canvas.
 	private boolean gameInProgress; // Represents if a game is currently in progress.
 	private boolean shiftPressed;   // Represents if the player is pressing the shift button.
 	
-	/** Winning/Losing conditions **/
+	/** Analytics **/
+	
+	private ThreeBV threeBV;		// The 3BV of the board and how much of it has been solved.
+	private int clicks;				// The number of clicks made during the game.
 	
-	private int boxesShown;			// The number of boxes in the shown state.
-	private int flagsPlaced;		// The number of flags placed.
-	private boolean hitMine;		// Represents if the player has clicked a mine.
+	private HintEngine hintEngine = new HintEngine(HINT_BUDGET_MILLIS); // Works out hints off the FX thread.
+	private HintEngine.Hint hint;	// The hint being shown, or null.
 	
 	private Label flagsLabel;		// For displaying the # of flags.
 	private Label clickedLabel;		// For displaying the # of shown squares.
 	private Label outcomeLabel;		// For displaying if the game has been won or lost.
+	private Label threeBVLabel;		// For displaying the 3BV and the efficiency.
 	
 	
 	
@@ -79,8 +92,9 @@ public class Minesweeper extends Application {
 		flagsLabel = makeLabel("Flags placed: 0");
 		clickedLabel = makeLabel("Boxes clicked: 0");
 		outcomeLabel = makeLabel("Good luck!");
+		threeBVLabel = makeLabel("3BV: 0/0");
 		
-		HBox infoBar = new HBox(6, clickedLabel, flagsLabel, outcomeLabel );
+		HBox infoBar = new HBox(6, clickedLabel, flagsLabel, threeBVLabel, outcomeLabel );
 		infoBar.setStyle("-fx-border-color: darkred; -fx-border-width: 3px 0 0 0;" 
                 + "-fx-padding: 8px; -fx-background-color:beige");
 		infoBar.setAlignment(Pos.CENTER);
@@ -130,25 +144,7 @@ public class Minesweeper extends Application {
 				for(int col = 0; col < COLUMNS; col++) {
 
 					/***** DRAW BOXES *****/
-					// Hidden = DarkGreen
-					if(state[row][col] == BoxState.HIDDEN) {
-						g.setFill(Color.DARKGREEN);
-						g.fillRect(rectX , rectY, boxWidth , boxHeight );
-					}
-					// Shown = LightGreen
-					else if(state[row][col] == BoxState.SHOWN) {
-						g.setFill(Color.LIMEGREEN);
-						g.fillRect(rectX , rectY, boxWidth, boxHeight);
-						int m = checkForMines(row, col);
-						g.setStroke(setTextColor(m));
-						if(m > 0)
-							g.strokeText(Integer.toString(m), rectX + (boxWidth * .45), rectY + (boxHeight * .6));
-					}
-					// Flagged = PINK
-					else if(state[row][col] == BoxState.FLAGGED) {
-						g.setFill(Color.HOTPINK);
-						g.fillRect(rectX, rectY, boxWidth, boxHeight);
-					}
+					drawBox(row, col, rectX, rectY, boxWidth, boxHeight);
 
 					/***** DRAW VERTICAL LINES *****/
 					g.setStroke(Color.BLACK);
@@ -177,45 +173,45 @@ public class Minesweeper extends Application {
 
 					/***** DRAW BOXES *****/
 					// Hidden = DarkGreen
-					if(state[row][col] == BoxState.HIDDEN) {
+					if(board.getState(row, col) == BoxState.HIDDEN) {
 						g.setFill(Color.DARKGREEN);
 						g.fillRect(rectX , rectY, boxWidth , boxHeight );
 
-						if(mines[row][col] == true) {
+						if(board.hasMine(row, col)) {
 							g.strokeText("*", rectX + (boxWidth * .45), rectY + (boxHeight * .6));
 						}
 						else {
-							int m = checkForMines(row, col);
+							int m = board.getMineCount(row, col);
 							g.setStroke(setTextColor(m));
 							if(m > 0)
 								g.strokeText(Integer.toString(m), rectX + (boxWidth * .45), rectY + (boxHeight * .6));
 						}
 					}
 					// Shown = LightGreen
-					else if(state[row][col] == BoxState.SHOWN) {
+					else if(board.getState(row, col) == BoxState.SHOWN) {
 						g.setFill(Color.LIMEGREEN);
 						g.fillRect(rectX , rectY, boxWidth, boxHeight);
-						if(mines[row][col] == true) {
+						if(board.hasMine(row, col)) {
 							g.setFill(Color.RED);
 							g.fillRect(rectX , rectY, boxWidth, boxHeight);
 							g.strokeText("*", rectX + (boxWidth * .45), rectY + (boxHeight * .6));
 						}
 						else {
-							int m = checkForMines(row, col);
+							int m = board.getMineCount(row, col);
 							g.setStroke(setTextColor(m));
 							if(m > 0)
 								g.strokeText(Integer.toString(m), rectX + (boxWidth * .45), rectY + (boxHeight * .6));
 						}
 					}
 					// Flagged = PINK
-					else if(state[row][col] == BoxState.FLAGGED) {
+					else if(board.getState(row, col) == BoxState.FLAGGED) {
 						g.setFill(Color.HOTPINK);
 						g.fillRect(rectX, rectY, boxWidth, boxHeight);
-						if(mines[row][col] == true) {
+						if(board.hasMine(row, col)) {
 							g.strokeText("*", rectX + (boxWidth * .45), rectY + (boxHeight * .6));
 						}
 						else {
-							int m = checkForMines(row, col);
+							int m = board.getMineCount(row, col);
 							g.setStroke(setTextColor(m));
 							if(m > 0)
 								g.strokeText(Integer.toString(m), rectX + (boxWidth * .45), rectY + (boxHeight * .6));
@@ -244,35 +240,83 @@ public class Minesweeper extends Application {
 		}
 	}
 
+	/**
+	 * Draws one box of a game in progress.
+	 * @param row The row.
+	 * @param col The column.
+	 * @param rectX The x-coordinate of the box.
+	 * @param rectY The y-coordinate of the box.
+	 * @param boxWidth The width of the box.
+	 * @param boxHeight The height of the box.
+	 */
+	private void drawBox(int row, int col, double rectX, double rectY, double boxWidth, double boxHeight) {
+		// Hidden = DarkGreen
+		if(board.getState(row, col) == BoxState.HIDDEN) {
+			g.setFill(Color.DARKGREEN);
+			g.fillRect(rectX , rectY, boxWidth , boxHeight );
+		}
+		// Shown = LightGreen
+		else if(board.getState(row, col) == BoxState.SHOWN) {
+			g.setFill(Color.LIMEGREEN);
+			g.fillRect(rectX , rectY, boxWidth, boxHeight);
+			int m = board.getMineCount(row, col);
+			g.setStroke(setTextColor(m));
+			if(m > 0)
+				g.strokeText(Integer.toString(m), rectX + (boxWidth * .45), rectY + (boxHeight * .6));
+		}
+		// Flagged = PINK
+		else if(board.getState(row, col) == BoxState.FLAGGED) {
+			g.setFill(Color.HOTPINK);
+			g.fillRect(rectX, rectY, boxWidth, boxHeight);
+		}
+	}
+
+	/**
+	 * Redraws only the boxes of one history block. Used after undo/redo so that
+	 * the rest of the board doesn't have to be drawn again.
+	 * @param block The block, as returned by BoardHistory.undo()/redo().
+	 */
+	private void drawBlock(int block) {
+		double boxWidth = g.getCanvas().getWidth() / COLUMNS;
+		double boxHeight = g.getCanvas().getHeight() / ROWS;
+
+		int firstRow = history.getBlockRow(block);
+		int firstCol = history.getBlockColumn(block);
+		int lastRow = Math.min(firstRow + BoardHistory.BLOCK_SIZE, ROWS);
+		int lastCol = Math.min(firstCol + BoardHistory.BLOCK_SIZE, COLUMNS);
+
+		for(int row = firstRow; row < lastRow; row++) {
+			for(int col = firstCol; col < lastCol; col++) {
+				double rectX = col * boxWidth;
+				double rectY = row * boxHeight;
+				drawBox(row, col, rectX, rectY, boxWidth, boxHeight);
+				g.setStroke(Color.BLACK);
+				g.strokeRect(rectX, rectY, boxWidth, boxHeight);
+			}
+		}
+	}
+
 	/**
 	 * Initializes all global variables and draws the board. This is called by the
 	 *  setDifficulty() method.
 	 */
 	private void initialize() {
 		
-		boxesShown = 0;
-		flagsPlaced = 0;
-		hitMine = false;
+		clicks = 0;
+		hint = null;
 		
 		/* Beginner: 12 mines in 10x10 
 		 * Intermediate: 35 mines in 15x15 
 		 * Expert: 82 mines in 20x20 */
 		
-		mines = new boolean[ROWS][COLUMNS];
-		state = new BoxState[ROWS][COLUMNS];
+		// The mines are set by the first click. Initial state is hidden.
+		board = new Board(ROWS, COLUMNS, NUMBER_OF_MINES, random);
+		board.setStateListener((row, col, oldState, newState) -> boxChanged(row, col, oldState, newState));
+		history = new BoardHistory(ROWS, COLUMNS);
+		threeBV = null; // Worked out once the mines are placed.
 		
 		gameInProgress = true;
 		
-		// Set mines.
-		placeMines(NUMBER_OF_MINES);
-		
-		// Initial state is hidden.
-		for(int row = 0; row < ROWS; row++) {
-			for(int col = 0; col < COLUMNS; col++) {
-				state[row][col] = BoxState.HIDDEN;
-			}
-		}
-		
 		calculateBounds();	
 		showData();
 		draw();		
@@ -280,30 +324,6 @@ public class Minesweeper extends Application {
 
 	
 	
-	/**
-	 * Places the mines the the mines array.
-	 * @param numOfMines The total number of mines to be placed.
-	 */
-	private void placeMines(int numOfMines) {
-		int randomRow;
-		int randomColumn;
-
-		int i = 0;
-		while(i < numOfMines) {
-			randomRow = (int) (Math.random() * ROWS);
-			randomColumn = (int) (Math.random() * COLUMNS);
-
-			if(mines[randomRow][randomColumn] == false) {
-				mines[randomRow][randomColumn] = true;
-				i++;				
-				// Debug statement.
-				System.out.println("Mine " + i + ": [" + randomRow + ", " + randomColumn + "]");
-			}
-			else {
-			}
-		}	
-	}
-	
 	/**
 	 * Starts a new game by reseting global variables and redrawing the board.
 	 */
@@ -356,249 +376,173 @@ public class Minesweeper extends Application {
 		col = getCol(x);
 
 		if(gameInProgress) {
-			if(state[row][col] == BoxState.HIDDEN && !shiftPressed && mines[row][col] == false) {
-				state[row][col] = BoxState.SHOWN;
-				boxesShown++;
-
-				if(boxesShown == (ROWS * COLUMNS - NUMBER_OF_MINES)) {
-					gameInProgress = false;
+			clicks++;
+			if(board.getState(row, col) == BoxState.HIDDEN && !shiftPressed) {
+				if(!board.areMinesPlaced()) {
+					// First click: place the mines around it, then it can be revealed.
+					board.placeMines(row, col);
+					threeBV = new ThreeBV(board);
 				}
+				board.reveal(row, col);
 			}
-			else if( (state[row][col] == BoxState.HIDDEN) && shiftPressed) {
-				state[row][col] = BoxState.FLAGGED;
-				flagsPlaced++;
+			else if(board.getState(row, col) == BoxState.SHOWN && !shiftPressed) {
+				board.chord(row, col);
 			}
-			else if( (state[row][col] == BoxState.FLAGGED) && shiftPressed) {
-				state[row][col] = BoxState.HIDDEN;		
-				flagsPlaced--;
+			else if(shiftPressed) {
+				board.toggleFlag(row, col);
 			}
-			else if( (state[row][col] == BoxState.HIDDEN) && !shiftPressed && mines[row][col] == true ) {
-				state[row][col] = BoxState.SHOWN;
-				hitMine = true;
+			history.commit(); // One click is one undo step.
+
+			if(board.hitMine() || board.isCleared()) {
 				gameInProgress = false;
-			}			
+			}
 		}
 		else {
 
 		}		
+		hint = null; // draw() paints over it.
 		draw();
 		showData();
 	}	
 	
 	/**
-	 * Checks for mines around a given block.
-	 * 
-	 * Corners: 3 checks.
-	 * 
-	 * Upper/Lower/Left/Right sides: 5 checks.
-	 * 
-	 * Center: 8 checks.
-	 * 
+	 * Called by the board for every state change a move makes. Records the change for
+	 * undo and keeps the 3BV up to date.
 	 * @param row The row.
-	 * @param column The column.
-	 * @return The number of mines surrounding the given (row, column).
+	 * @param col The column.
+	 * @param oldState The state before the move.
+	 * @param newState The state after the move.
 	 */
-	private int checkForMines(int row, int column) {
-		int mine = 0;
-		
-		/********** CORNERS (3 checks) **********/
-		/*** Upper left corner. ***/
-		if(row == 0 && column == 0) {
-			// 1) Right.
-			// row col + 1
-			if(mines[row][column + 1] == true)
-				mine += 1;
-			// 2) Lower right.
-			// row + 1 col + 1
-			if(mines[row + 1][column + 1] == true)
-				mine += 1;
-			// 3) Lower.		
-			// row + 1 col
-			if(mines[row + 1][column] == true)
-				mine += 1;
-		}
-		/*** Lower left corner. ***/
-		else if(row == ROWS - 1 && column == 0) {
-			// 1) Upper.
-			// row - 1 col
-			if(mines[row - 1][column] == true)
-				mine += 1;
-			// 2) Upper right.
-			// row - 1 col + 1
-			if(mines[row - 1][column + 1] == true)
-				mine += 1;
-			// 3) Right.
-			// row col + 1
-			if(mines[row][column + 1] == true)
-				mine += 1;
-		}
-		/*** Upper right corner. ***/
-		else if(row == 0 && column == COLUMNS - 1) {
-			// 1) Left.
-			// row col - 1
-			if(mines[row][column - 1] == true)
-				mine += 1;
-			// 2) Lower left.
-			// row + 1 col - 1
-			if(mines[row + 1][column - 1] == true)
-				mine += 1;
-			// 3) Lower.
-			// row + 1 col
-			if(mines[row + 1][column] == true)
-				mine += 1;
-		}
-		/*** Lower right corner. ***/
-		else if( (row == ROWS - 1) && column == COLUMNS - 1) {
-			// 1) Upper.
-			// row - 1 col
-			if(mines[row - 1][column] == true)
-				mine += 1;
-			// 2) Upper left.
-			// row - 1 col - 1
-			if(mines[row - 1][column - 1] == true)
-				mine += 1;
-			// 3) Left.
-			// row col - 1
-			if(mines[row][column - 1] == true)
-				mine += 1;
-		}
-		
-		/********** SIDES (5 checks) **********/
-		
-		/*** Left side. ***/
-		else if( (column == 0) && (row > 0) && (row < ROWS - 1)) {
-			// 1) Upper.
-			// row - 1 col
-			if(mines[row - 1][column] == true)
-				mine += 1;
-			// 2) Upper right.
-			// row - 1 col + 1
-			if(mines[row - 1][column + 1] == true)
-				mine += 1;
-			// 3) Right.
-			// row col + 1
-			if(mines[row][column + 1] == true)
-				mine += 1;
-			// 4) Lower right.
-			// row + 1 col + 1
-			if(mines[row + 1][column + 1] == true)
-				mine += 1;
-			// 5) Lower.
-			// row + 1 col
-			if(mines[row + 1][column] == true)
-				mine += 1;
+	private void boxChanged(int row, int col, BoxState oldState, BoxState newState) {
+		if(oldState == BoxState.SHOWN)
+			threeBV.boxHidden(row, col);
+		if(newState == BoxState.SHOWN)
+			threeBV.boxShown(row, col);
+		history.record(row, col, newState);
+	}
+
+	/*********** HINTS ************/
+
+	/**
+	 * Asks the hint engine for the safest box. The answer comes back on another thread
+	 * and is shown on the FX thread, unless the board has changed in the meantime.
+	 */
+	private void doHint() {
+		if(!gameInProgress)
+			return;
+
+		// Before the first click there are no mines yet, and the first box revealed is always safe.
+		if(!board.areMinesPlaced()) {
+			showHint(new HintEngine.Hint(ROWS / 2, COLUMNS / 2, 0));
+			return;
 		}
-		
-		/*** Upper. ***/
-		else if( (row == 0) && (column > 0) && (column < COLUMNS - 1) ) {
-			// 1) Left.
-			// row col - 1
-			if(mines[row][column - 1] == true)
-				mine += 1;
-			// 2) Lower left.
-			// row + 1 col - 1
-			if(mines[row + 1][column - 1] == true)
-				mine += 1;
-			// 3) Lower.
-			// row + 1 col
-			if(mines[row + 1][column] == true)
-				mine += 1;
-			// 4) Lower right.
-			// row + 1 col + 1
-			if(mines[row + 1][column + 1] == true)
-				mine += 1;
-			// 5) Right.
-			// row col + 1
-			if(mines[row][column + 1] == true)
-				mine += 1;
+
+		Board hintBoard = board;
+		long version = board.getVersion();
+		hintEngine.requestHint(board).thenAccept(h -> Platform.runLater(() -> {
+			if(h != null && board == hintBoard && board.getVersion() == version && gameInProgress)
+				showHint(h);
+		}));
+	}
+
+	/**
+	 * Outlines the hinted box and shows how risky it is.
+	 * @param h The hint.
+	 */
+	private void showHint(HintEngine.Hint h) {
+		clearHint();
+		hint = h;
+
+		double boxWidth = g.getCanvas().getWidth() / COLUMNS;
+		double boxHeight = g.getCanvas().getHeight() / ROWS;
+		g.setStroke(Color.GOLD);
+		g.setLineWidth(3);
+		g.strokeRect(h.col * boxWidth + 2, h.row * boxHeight + 2, boxWidth - 4, boxHeight - 4);
+		g.setLineWidth(1);
+
+		if(h.mineProbability == 0)
+			outcomeLabel.setText("Hint: safe!");
+		else
+			outcomeLabel.setText("Hint: " + Math.round(h.mineProbability * 100) + "% risk");
+	}
+
+	/**
+	 * Redraws the hinted box without its outline.
+	 */
+	private void clearHint() {
+		if(hint == null)
+			return;
+
+		double boxWidth = g.getCanvas().getWidth() / COLUMNS;
+		double boxHeight = g.getCanvas().getHeight() / ROWS;
+		drawBox(hint.row, hint.col, hint.col * boxWidth, hint.row * boxHeight, boxWidth, boxHeight);
+		g.setStroke(Color.BLACK);
+		g.strokeRect(hint.col * boxWidth, hint.row * boxHeight, boxWidth, boxHeight);
+		hint = null;
+	}
+
+	/*********** UNDO/REDO ************/
+
+	/**
+	 * Takes back the last move.
+	 */
+	private void doUndo() {
+		applyHistory(history.undo());
+	}
+
+	/**
+	 * Makes the last move that was taken back again.
+	 */
+	private void doRedo() {
+		applyHistory(history.redo());
+	}
+
+	/**
+	 * Copies the blocks changed by undo/redo back into the board, updates the
+	 * 3BV and redraws only those blocks.
+	 * @param blocks The changed blocks, or null if nothing changed.
+	 */
+	private void applyHistory(int[] blocks) {
+		if(blocks == null)
+			return;
+		clearHint();
+
+		for(int block : blocks) {
+			int firstRow = history.getBlockRow(block);
+			int firstCol = history.getBlockColumn(block);
+			int lastRow = Math.min(firstRow + BoardHistory.BLOCK_SIZE, ROWS);
+			int lastCol = Math.min(firstCol + BoardHistory.BLOCK_SIZE, COLUMNS);
+
+			for(int row = firstRow; row < lastRow; row++) {
+				for(int col = firstCol; col < lastCol; col++) {
+					BoxState oldState = board.getState(row, col);
+					BoxState newState = history.getState(row, col);
+					if(oldState == newState)
+						continue;
+
+					if(oldState == BoxState.SHOWN)
+						threeBV.boxHidden(row, col);
+					if(newState == BoxState.SHOWN)
+						threeBV.boxShown(row, col);
+					board.setState(row, col, newState);
+				}
+			}
 		}
-		
-		/*** Right side. ***/
-		else if( (column == COLUMNS - 1) && (row > 0) && (row < ROWS - 1)) {
-			// 1) Upper.
-			// row - 1 col
-			if(mines[row - 1][column] == true)
-				mine += 1;
-			// 2) Upper left.
-			// row - 1 col - 1
-			if(mines[row - 1][column - 1] == true)
-				mine += 1;
-			// 3) Left.
-			// row col - 1
-			if(mines[row][column - 1] == true)
-				mine += 1;
-			// 4) Lower left.
-			// row + 1 col - 1
-			if(mines[row + 1][column - 1] == true)
-				mine += 1;
-			// 5) Lower.
-			// row + 1 col
-			if(mines[row + 1][column] == true)
-				mine += 1;
+
+		boolean wasInProgress = gameInProgress;
+		gameInProgress = !board.hitMine() && !board.isCleared();
+
+		// Going in or out of game over changes how every box is drawn.
+		if(wasInProgress != gameInProgress) {
+			draw();
 		}
-		
-		/*** Lower. ***/
-		else if( (row == ROWS - 1) && (column > 0) && (column < COLUMNS - 1)) {
-			// 1) Right.
-			// row col + 1
-			if(mines[row][column + 1] == true)
-				mine += 1;
-			// 2) Upper right.
-			// row - 1 col + 1
-			if(mines[row - 1][column + 1] == true)
-				mine += 1;
-			// 3) Upper.
-			// row - 1 col
-			if(mines[row - 1][column] == true)
-				mine += 1;
-			// 4) Upper left.
-			// row - 1 col - 1
-			if(mines[row - 1][column - 1] == true)
-				mine += 1;
-			// 5) Left.
-			// row col - 1
-			if(mines[row][column - 1] == true)
-				mine += 1;
-		}		
-		/*** Rest of boxes. (8 checks) ***/
-		else if( row > 0 && row < ROWS - 1 && column > 0 && column < COLUMNS - 1) {			
-			// 1) Upper left.
-			// row - 1 col - 1
-			if(mines[row - 1][column - 1] == true)
-				mine += 1;			
-			// 2) Upper.
-			// row - 1 col
-			if(mines[row - 1][column] == true)
-				mine += 1;			
-			// 3) Upper right.
-			// row - 1 col + 1
-			if(mines[row - 1][column + 1] == true)
-				mine += 1;			
-			// 4) Right.
-			// row col + 1
-			if(mines[row][column + 1] == true)
-				mine += 1;			
-			// 5) Lower right.
-			// row + 1 col + 1
-			if(mines[row + 1][column + 1] == true)
-				mine += 1;			
-			// 6) Lower.
-			// row + 1 col
-			if(mines[row + 1][column] == true)
-				mine += 1;			
-			// 7) Lower left.
-			// row + 1 col - 1
-			if(mines[row + 1][column - 1] == true)
-				mine += 1;			
-			// 8) Left.
-			// row col - 1
-			if(mines[row][column - 1] == true)
-				mine += 1;			
+		else {
+			for(int block : blocks)
+				drawBlock(block);
 		}
-		
-		return mine;
+		showData();
 	}
-	
+
 	/**
 	 * Sets the rows/columns/mines to the correct values based on the difficulty.
 	 * @param difficulty The difficulty(beginner, intermediate, or expert);
@@ -700,13 +644,22 @@ public class Minesweeper extends Application {
      */
     private void showData() {
     	
-        clickedLabel.setText("Boxes clicked: " + boxesShown + "/" + (ROWS*COLUMNS - NUMBER_OF_MINES));
-        flagsLabel.setText("Flags placed: " + flagsPlaced);     
+        clickedLabel.setText("Boxes clicked: " + board.getBoxesShown() + "/" + (ROWS*COLUMNS - NUMBER_OF_MINES));
+        flagsLabel.setText("Flags placed: " + board.getFlagsPlaced());     
         
-        if(boxesShown == (ROWS * COLUMNS - NUMBER_OF_MINES) && !hitMine && flagsPlaced == NUMBER_OF_MINES) {
+        // Efficiency = 3BV solved / clicks.
+        if(threeBV == null) {
+        	threeBVLabel.setText("3BV: - Eff: -");
+        }
+        else {
+        	String efficiency = (clicks == 0) ? "-" : (threeBV.getSolved() * 100 / clicks) + "%";
+        	threeBVLabel.setText("3BV: " + threeBV.getSolved() + "/" + threeBV.getTotal() + " Eff: " + efficiency);
+        }
+        
+        if(board.isCleared() && board.getFlagsPlaced() == NUMBER_OF_MINES) {
         	outcomeLabel.setText("You won!");
         }
-        else if(hitMine) {
+        else if(board.hitMine()) {
         	outcomeLabel.setText("You lose!");
         }
         else
@@ -737,14 +690,14 @@ public class Minesweeper extends Application {
     }
     
     /**
-	 * Creates a Menu Bar with the items "New Game" and "Quit".
+	 * Creates a Menu Bar with the items "New Game", "Hint", "Undo", "Redo" and "Quit".
 	 * @return The menu bar.
 	 */
 	private MenuBar createMenuBar() {
 		
 		MenuBar menuBar;
 		Menu menu;
-		MenuItem newGameItem, quitGameItem;
+		MenuItem newGameItem, hintItem, undoItem, redoItem, quitGameItem;
 		
 		menuBar = new MenuBar();
 		
@@ -756,6 +709,18 @@ public class Minesweeper extends Application {
 		menu.getItems().add(newGameItem);
 		newGameItem.setOnAction(evt -> doNewGame());
 		
+		hintItem = new MenuItem("Hint");
+		menu.getItems().add(hintItem);
+		hintItem.setOnAction(evt -> doHint());
+		
+		undoItem = new MenuItem("Undo");
+		menu.getItems().add(undoItem);
+		undoItem.setOnAction(evt -> doUndo());
+
+		redoItem = new MenuItem("Redo");
+		menu.getItems().add(redoItem);
+		redoItem.setOnAction(evt -> doRedo());
+
 		quitGameItem = new MenuItem("Quit");
 		menu.getItems().add(quitGameItem);
 		quitGameItem.setOnAction(evt -> System.exit(0));
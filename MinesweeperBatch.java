@@ -0,0 +1,398 @@
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Plays Minesweeper without the GUI, for regression tests and bot competitions.
+ *
+ * The board comes from a seed (--rows, --columns, --mines, --seed) or from a file of '*' (mine)
+ * and '.' (no mine) lines (--board). Moves are read from stdin or --in, and one result per move
+ * is written to stdout or --out, as soon as the move has been read.
+ *
+ * Text moves are one per line: an operation letter, a row and a column, e.g. "r 3 4".
+ * r = reveal, f = flag/unflag, c = chord. Each result line is:
+ *
+ *   status boxesShown flagsPlaced changes [row col visible]...
+ *
+ * where status is 0 (playing), 1 (won) or 2 (lost), and every box the move changed is listed
+ * with what is now visible on it: its mine count if shown, or Board's VISIBLE_ constants.
+ *
+ * With --binary, moves are 9 bytes (the operation letter as one byte, then row and column as
+ * big-endian ints), and results are a status byte, three ints (boxes shown, flags placed,
+ * changes), then row int, col int and visible byte for every change.
+ *
+ * With --safe, mines in or next to the first box revealed are moved elsewhere (with the same
+ * seed), so the first reveal never loses.
+ *
+ * Input and output go through direct buffers and the moves are parsed straight from bytes,
+ * so no Strings are made per move.
+ *
+ * @author martin
+ *
+ */
+public class MinesweeperBatch {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final byte PLAYING = 0;
+	private static final byte WON = 1;
+	private static final byte LOST = 2;
+
+	private final ReadableByteChannel in;
+	private final WritableByteChannel out;
+	private final boolean binary;
+	private final Board board;
+	private final Random safeRandom;	// Where mines around the first reveal are moved to, or null.
+
+	private final ByteBuffer input = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final ByteBuffer output = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private boolean endOfInput;
+	private long line = 1;				// The line being read, for error messages.
+
+	private int[] changes = new int[64];	// The boxes changed by the current move.
+	private int changeCount;
+
+	private MinesweeperBatch(Board board, Random safeRandom, ReadableByteChannel in, WritableByteChannel out, boolean binary) {
+		this.board = board;
+		this.safeRandom = safeRandom;
+		this.in = in;
+		this.out = out;
+		this.binary = binary;
+		input.flip(); // Start empty.
+
+		board.setStateListener((row, col, oldState, newState) -> {
+			if(changeCount == changes.length)
+				changes = Arrays.copyOf(changes, changeCount * 2);
+			changes[changeCount++] = board.index(row, col);
+		});
+	}
+
+	public static void main(String[] args) throws IOException {
+		int rows = 16, columns = 30, mines = 99;
+		long seed = System.nanoTime();
+		Path boardFile = null, inFile = null, outFile = null;
+		boolean binary = false;
+		boolean safe = false;
+
+		try {
+			for(int i = 0; i < args.length; i++) {
+				switch(args[i]) {
+				case "--rows": rows = Integer.parseInt(args[++i]); break;
+				case "--columns": columns = Integer.parseInt(args[++i]); break;
+				case "--mines": mines = Integer.parseInt(args[++i]); break;
+				case "--seed": seed = Long.parseLong(args[++i]); break;
+				case "--board": boardFile = Path.of(args[++i]); break;
+				case "--in": inFile = Path.of(args[++i]); break;
+				case "--out": outFile = Path.of(args[++i]); break;
+				case "--binary": binary = true; break;
+				case "--safe": safe = true; break;
+				default: throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+			if(boardFile == null && (rows <= 0 || columns <= 0 || mines < 0 || mines > rows * columns))
+				throw new IllegalArgumentException("Bad board size " + rows + "x" + columns + " with " + mines + " mines");
+		}
+		catch(ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+			System.err.println(e.getMessage() == null ? "Missing option value" : e.getMessage());
+			System.err.println("Usage: java MinesweeperBatch [--rows N --columns N --mines N --seed N | --board FILE]"
+					+ " [--in FILE] [--out FILE] [--binary] [--safe]");
+			System.exit(2);
+			return;
+		}
+
+		Random random = new Random(seed);
+		boolean[][] field = (boardFile != null) ? readBoard(boardFile) : placeMines(rows, columns, mines, random);
+
+		ReadableByteChannel in = (inFile != null) ? new FileInputStream(inFile.toFile()).getChannel() : Channels.newChannel(System.in);
+		WritableByteChannel out = (outFile != null) ? new FileOutputStream(outFile.toFile()).getChannel() : Channels.newChannel(System.out);
+		try(in; out) {
+			new MinesweeperBatch(new Board(field), safe ? random : null, in, out, binary).run();
+		}
+		catch(IllegalStateException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Places mines at random, the same way for the same seed.
+	 */
+	static boolean[][] placeMines(int rows, int columns, int mines, Random random) {
+		boolean[][] field = new boolean[rows][columns];
+		int placed = 0;
+		while(placed < mines) {
+			int row = random.nextInt(rows);
+			int col = random.nextInt(columns);
+			if(!field[row][col]) {
+				field[row][col] = true;
+				placed++;
+			}
+		}
+		return field;
+	}
+
+	/**
+	 * Reads a board of '*' (mine) and '.' (no mine) lines.
+	 */
+	static boolean[][] readBoard(Path file) throws IOException {
+		List<String> lines = Files.readAllLines(file);
+		lines.removeIf(String::isBlank);
+		if(lines.isEmpty())
+			throw new IOException(file + ": no rows");
+
+		boolean[][] field = new boolean[lines.size()][lines.get(0).trim().length()];
+		for(int row = 0; row < field.length; row++) {
+			String text = lines.get(row).trim();
+			if(text.length() != field[0].length)
+				throw new IOException(file + ":" + (row + 1) + ": expected " + field[0].length + " boxes");
+			for(int col = 0; col < text.length(); col++)
+				field[row][col] = text.charAt(col) == '*';
+		}
+		return field;
+	}
+
+	/**
+	 * Reads, plays and answers moves until the input ends. The answers to the moves before a
+	 * bad one are written before it is reported.
+	 */
+	private void run() throws IOException {
+		try {
+			play();
+		}
+		finally {
+			flush();
+		}
+	}
+
+	private void play() throws IOException {
+		while(true) {
+			int op = binary ? readByte() : readOperation();
+			if(op < 0)
+				break;
+			if(op != 'r' && op != 'f' && op != 'c')
+				throw new IllegalStateException("Line " + line + ": unknown move '" + (char) op + "'");
+			int row = binary ? readBinaryInt() : readTextInt();
+			int col = binary ? readBinaryInt() : readTextInt();
+			if(!binary)
+				readLineEnd();
+			if(row < 0 || row >= board.getRows() || col < 0 || col >= board.getColumns())
+				throw new IllegalStateException("Line " + line + ": box " + row + "," + col + " is not on the board");
+
+			changeCount = 0;
+			if(!board.hitMine() && !board.isCleared()) {
+				if(op == 'r' && safeRandom != null && board.getBoxesShown() == 0)
+					board.makeSafe(row, col, safeRandom);
+				if(op == 'r')
+					board.reveal(row, col);
+				else if(op == 'f')
+					board.toggleFlag(row, col);
+				else
+					board.chord(row, col);
+			}
+			writeResult();
+
+			// Don't hold results back when the other side is waiting for them (a bot on a pipe).
+			if(!input.hasRemaining())
+				flush();
+		}
+	}
+
+	/*********** OUTPUT ************/
+
+	private void writeResult() throws IOException {
+		byte status = board.hitMine() ? LOST : board.isCleared() ? WON : PLAYING;
+		if(binary) {
+			ensureOutput(13);
+			output.put(status).putInt(board.getBoxesShown()).putInt(board.getFlagsPlaced()).putInt(changeCount);
+			for(int i = 0; i < changeCount; i++) {
+				ensureOutput(9);
+				int box = changes[i];
+				output.putInt(board.getRow(box)).putInt(board.getColumn(box)).put(visible(box));
+			}
+		}
+		else {
+			ensureOutput(48);
+			writeTextInt(status);
+			writeTextInt(board.getBoxesShown());
+			writeTextInt(board.getFlagsPlaced());
+			writeTextInt(changeCount);
+			for(int i = 0; i < changeCount; i++) {
+				ensureOutput(36);
+				int box = changes[i];
+				writeTextInt(board.getRow(box));
+				writeTextInt(board.getColumn(box));
+				writeTextInt(visible(box));
+			}
+			output.put(output.position() - 1, (byte) '\n'); // Replace the last space.
+		}
+	}
+
+	/**
+	 * Returns what is now visible on a box, as in Board.getVisible().
+	 */
+	private byte visible(int box) {
+		Minesweeper.BoxState state = board.getStateAt(box);
+		if(state == Minesweeper.BoxState.HIDDEN)
+			return Board.VISIBLE_HIDDEN;
+		if(state == Minesweeper.BoxState.FLAGGED)
+			return Board.VISIBLE_FLAGGED;
+		if(board.hasMineAt(box))
+			return Board.VISIBLE_MINE;
+		return (byte) board.getMineCountAt(box);
+	}
+
+	/**
+	 * Writes an int in decimal followed by a space.
+	 */
+	private void writeTextInt(int value) {
+		if(value < 0) {
+			output.put((byte) '-');
+			value = -value;
+		}
+		int start = output.position();
+		do {
+			output.put((byte) ('0' + value % 10));
+			value /= 10;
+		} while(value > 0);
+
+		// The digits went in backwards.
+		for(int i = start, j = output.position() - 1; i < j; i++, j--) {
+			byte digit = output.get(i);
+			output.put(i, output.get(j));
+			output.put(j, digit);
+		}
+		output.put((byte) ' ');
+	}
+
+	private void ensureOutput(int bytes) throws IOException {
+		if(output.remaining() < bytes)
+			flush();
+	}
+
+	private void flush() throws IOException {
+		output.flip();
+		while(output.hasRemaining())
+			out.write(output);
+		output.clear();
+	}
+
+	/*********** INPUT ************/
+
+	/**
+	 * Makes sure there is at least one byte to read.
+	 * @return False at the end of the input.
+	 */
+	private boolean fill() throws IOException {
+		if(input.hasRemaining())
+			return true;
+		if(endOfInput)
+			return false;
+
+		input.clear();
+		int read = in.read(input);
+		while(read == 0)
+			read = in.read(input);
+		input.flip();
+		if(read < 0) {
+			endOfInput = true;
+			return false;
+		}
+		return true;
+	}
+
+	private int readByte() throws IOException {
+		return fill() ? input.get() & 0xFF : -1;
+	}
+
+	private int readBinaryInt() throws IOException {
+		int value = 0;
+		for(int i = 0; i < 4; i++) {
+			int b = readByte();
+			if(b < 0)
+				throw new IllegalStateException("Input ends in the middle of a move");
+			value = (value << 8) | b;
+		}
+		return value;
+	}
+
+	/**
+	 * Skips spaces and blank lines and reads an operation letter.
+	 * @return The letter, or -1 at the end of the input.
+	 */
+	private int readOperation() throws IOException {
+		int b = skipSpaces(true);
+		if(b >= 0)
+			input.get();
+		return b;
+	}
+
+	/**
+	 * Reads a decimal int on the current line.
+	 */
+	private int readTextInt() throws IOException {
+		int b = skipSpaces(false);
+		if(b < '0' || b > '9')
+			throw new IllegalStateException("Line " + line + ": expected a number");
+
+		int value = 0;
+		while(fill()) {
+			b = input.get(input.position());
+			if(b < '0' || b > '9')
+				break;
+			if(value > (Integer.MAX_VALUE - (b - '0')) / 10)
+				throw new IllegalStateException("Line " + line + ": number too big");
+			value = value * 10 + (b - '0');
+			input.get();
+		}
+		return value;
+	}
+
+	/**
+	 * Checks that nothing but spaces is left on the current line.
+	 */
+	private void readLineEnd() throws IOException {
+		int b = skipSpaces(false);
+		if(b < 0 || b == '\n')
+			return;
+
+		// Only a bad line gets here, so making a String is fine.
+		StringBuilder token = new StringBuilder();
+		while(fill() && token.length() < 20) {
+			b = input.get(input.position());
+			if(b == ' ' || b == '\t' || b == '\r' || b == '\n')
+				break;
+			token.append((char) b);
+			input.get();
+		}
+		throw new IllegalStateException("Line " + line + ": unexpected '" + token + "' after the move");
+	}
+
+	/**
+	 * Skips spaces (and line ends, if allowed) without taking the next byte.
+	 * @return The next byte, or -1 at the end of the input.
+	 */
+	private int skipSpaces(boolean newLines) throws IOException {
+		while(fill()) {
+			int b = input.get(input.position());
+			if(b == '\n') {
+				if(!newLines)
+					return b;
+				line++;
+			}
+			else if(b != ' ' && b != '\t' && b != '\r') {
+				return b;
+			}
+			input.get();
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,336 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+/**
+ * Plays games by itself (following HintEngine) and writes every move to a file, to train
+ * models that predict moves.
+ *
+ * Every game starts on a random box, and its mines are only placed when that box is revealed,
+ * so the first move never loses. After that, moves are chosen with HintEngine.findHint() and a
+ * limit on enumeration steps (--nodes), not with a time budget, so the same options and seed
+ * always write the same file.
+ *
+ * Each record is one move: what was visible just before it and the box that was revealed.
+ * Records are stored in columns, in chunks of a fixed number of records, so a reader can map
+ * the file into memory and use each column of a chunk as an array straight away. A game's
+ * records may go on into the next chunks. All numbers are little-endian.
+ *
+ * The file starts with a 64-byte header:
+ *
+ *   0  "MSDS"            4  format version (2)     8  rows            12 columns
+ *   16 mines             20 records per chunk      24 flags (1 = compressed)
+ *   28 chunk bytes       32 games (long)           40 records (long)
+ *   48 outcomes (long, where the outcome table starts)                56-63 zero
+ *
+ * Then come the chunks. Each starts with two ints (its number of records, then the number of
+ * bytes that follow) and is padded to a multiple of 8 bytes. Without compression every chunk
+ * is the same size ("chunk bytes" plus its 8-byte head), so chunk i is at 64 + i * (8 + chunk
+ * bytes). Its columns follow each other, each with room for a full chunk of records and
+ * starting on a multiple of 8:
+ *
+ *   game     long   The number of the game, from 0.
+ *   row      int    The box that was revealed.
+ *   col      int
+ *   states   byte[rows * columns]   The BoxState ordinal of every box, row by row.
+ *   counts   byte[rows * columns]   The number on every shown box, 0 for the others.
+ *
+ * Records past a chunk's number of records are not used.
+ *
+ * With --compress the used part of each column (number of records times its width, with no
+ * room left over) is put one after the other and deflated at the fastest level, so chunks
+ * have different sizes and must be read one after the other.
+ *
+ * After the last chunk comes the outcome table: one byte per game, in game order, saying how
+ * the game ended: 1 (won) or 2 (lost). The record's game number is its index in the table.
+ *
+ * By default a chunk holds 4096 records, or fewer on big boards so that it stays under 64 MB.
+ * Memory stays at one chunk (two when compressing) and a byte per game, whatever the board
+ * size and however long the games are.
+ *
+ * @author martin
+ *
+ */
+public class MinesweeperDataset {
+
+	private static final int HEADER_SIZE = 64;
+	private static final int VERSION = 2;
+	private static final int COMPRESSED = 1;
+	private static final int DEFAULT_CHUNK_RECORDS = 4096;
+	private static final long DEFAULT_CHUNK_BYTES = 64L * 1024 * 1024;	// The most a chunk takes unless --chunk is given.
+	private static final int RECORD_HEAD_BYTES = 16;				// A record's game, row and col.
+	private static final long TABLE_BYTES = 16L * 1024 * 1024;	// The memory budget of the solved groups.
+
+	private static final byte WON = 1;
+	private static final byte LOST = 2;
+
+	private final int rows;
+	private final int columns;
+	private final int mines;
+	private final int cells;			// The number of boxes on the board.
+	private final int chunkRecords;		// The number of records a chunk has room for.
+	private final FileChannel out;
+	private final Deflater deflater;	// Null if the chunks are not compressed.
+
+	/** Where each column of a chunk starts. **/
+
+	private final int gameColumn;
+	private final int rowColumn;
+	private final int colColumn;
+	private final int statesColumn;
+	private final int countsColumn;
+	private final int chunkBytes;		// The size of a chunk's columns.
+
+	private final ByteBuffer chunk;		// The columns of the chunk being filled.
+	private final ByteBuffer compressed;
+	private final byte[] states;		// One record's states, before they go into the chunk.
+	private final byte[] counts;		// One record's counts.
+	private int records;				// The records in the chunk being filled.
+	private byte[] outcomes = new byte[1024];	// How each game ended, by game number.
+
+	private long gamesWritten;
+	private long recordsWritten;
+	private long gamesWon;
+
+	private MinesweeperDataset(int rows, int columns, int mines, int chunkRecords, FileChannel out, boolean compress) {
+		this.rows = rows;
+		this.columns = columns;
+		this.mines = mines;
+		this.out = out;
+		cells = rows * columns;
+		this.chunkRecords = chunkRecords;
+
+		gameColumn = 0;
+		rowColumn = gameColumn + align(8L * chunkRecords);
+		colColumn = rowColumn + align(4L * chunkRecords);
+		statesColumn = colColumn + align(4L * chunkRecords);
+		countsColumn = statesColumn + align((long) cells * chunkRecords);
+		chunkBytes = countsColumn + align((long) cells * chunkRecords);
+
+		chunk = ByteBuffer.allocateDirect(chunkBytes).order(ByteOrder.LITTLE_ENDIAN);
+		states = new byte[cells];
+		counts = new byte[cells];
+		if(compress) {
+			deflater = new Deflater(Deflater.BEST_SPEED);
+			compressed = ByteBuffer.allocateDirect(chunkBytes + chunkBytes / 8 + 64).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		else {
+			deflater = null;
+			compressed = null;
+		}
+	}
+
+	/**
+	 * Rounds up to a multiple of 8.
+	 */
+	private static int align(long bytes) {
+		long aligned = (bytes + 7) & ~7L;
+		if(aligned > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("A chunk of " + aligned + " bytes is too big; use a smaller board");
+		return (int) aligned;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int rows = 16, columns = 30, mines = 99;
+		long games = 1000;
+		long seed = System.nanoTime();
+		long maxNodes = 1_000_000;
+		int chunkRecords = 0;	// 0 until --chunk is given.
+		Path outFile = null;
+		boolean compress = false;
+
+		try {
+			for(int i = 0; i < args.length; i++) {
+				switch(args[i]) {
+				case "--rows": rows = Integer.parseInt(args[++i]); break;
+				case "--columns": columns = Integer.parseInt(args[++i]); break;
+				case "--mines": mines = Integer.parseInt(args[++i]); break;
+				case "--games": games = Long.parseLong(args[++i]); break;
+				case "--seed": seed = Long.parseLong(args[++i]); break;
+				case "--nodes": maxNodes = Long.parseLong(args[++i]); break;
+				case "--chunk": chunkRecords = Integer.parseInt(args[++i]); break;
+				case "--out": outFile = Path.of(args[++i]); break;
+				case "--compress": compress = true; break;
+				default: throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+			if(outFile == null)
+				throw new IllegalArgumentException("No --out file");
+			if(rows <= 0 || columns <= 0 || mines < 0 || mines >= rows * columns)
+				throw new IllegalArgumentException("Bad board size " + rows + "x" + columns + " with " + mines + " mines");
+			if(games < 0 || chunkRecords < 0 || maxNodes < 0)
+				throw new IllegalArgumentException("Games, chunk and nodes can't be negative");
+			if(games > Integer.MAX_VALUE - 8)
+				throw new IllegalArgumentException("At most " + (Integer.MAX_VALUE - 8) + " games fit in the outcome table");
+			if(chunkRecords == 0) {
+				long recordBytes = RECORD_HEAD_BYTES + 2L * rows * columns;
+				chunkRecords = (int) Math.max(1, Math.min(DEFAULT_CHUNK_RECORDS, DEFAULT_CHUNK_BYTES / recordBytes));
+			}
+		}
+		catch(ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+			System.err.println(e.getMessage() == null ? "Missing option value" : e.getMessage());
+			System.err.println("Usage: java MinesweeperDataset --out FILE [--rows N --columns N --mines N]"
+					+ " [--games N] [--seed N] [--nodes N] [--chunk RECORDS] [--compress]");
+			System.exit(2);
+			return;
+		}
+
+		long start = System.nanoTime();
+		try(FileChannel out = FileChannel.open(outFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			MinesweeperDataset dataset = new MinesweeperDataset(rows, columns, mines, chunkRecords, out, compress);
+			TranspositionTable table = new TranspositionTable(TABLE_BYTES);
+			Random random = new Random(seed);
+			long gameCount = games;
+			long nodes = maxNodes;
+
+			// The search recurses once per frontier box, so play on a thread with a big stack.
+			IOException[] failure = new IOException[1];
+			Thread player = new Thread(null, () -> {
+				try {
+					dataset.play(gameCount, random, table, nodes);
+				}
+				catch(IOException e) {
+					failure[0] = e;
+				}
+			}, "dataset", 64L * 1024 * 1024);
+			player.start();
+			player.join();
+			if(failure[0] != null)
+				throw failure[0];
+
+			System.err.printf("%d games (%d won), %d moves, %d bytes in %.1f s%n", dataset.gamesWritten,
+					dataset.gamesWon, dataset.recordsWritten, out.size(), (System.nanoTime() - start) / 1e9);
+			System.err.println("Solved groups: " + table);
+		}
+	}
+
+	/**
+	 * Plays and writes the games, then the outcome table and the header.
+	 */
+	private void play(long games, Random random, TranspositionTable table, long maxNodes) throws IOException {
+		out.position(HEADER_SIZE);
+		for(long game = 0; game < games; game++) {
+			// The mines are placed around the first box when it is revealed.
+			Board board = new Board(rows, columns, mines, random);
+			int row = random.nextInt(rows);
+			int col = random.nextInt(columns);
+			while(true) {
+				addRecord(game, board, row, col);
+				board.reveal(row, col);
+				if(board.hitMine() || board.isCleared())
+					break;
+				HintEngine.Hint hint = HintEngine.findHint(board, table, maxNodes);
+				row = hint.row;
+				col = hint.col;
+			}
+
+			byte outcome = board.isCleared() ? WON : LOST;
+			if(gamesWritten == outcomes.length)
+				outcomes = Arrays.copyOf(outcomes, (int) Math.min(2L * outcomes.length, Integer.MAX_VALUE - 8));
+			outcomes[(int) gamesWritten++] = outcome;
+			if(outcome == WON)
+				gamesWon++;
+		}
+		if(records > 0)
+			writeChunk();
+		long outcomesAt = out.position();
+		writeFully(ByteBuffer.wrap(outcomes, 0, (int) gamesWritten));
+		writeFully(ByteBuffer.allocate(align(gamesWritten) - (int) gamesWritten));
+		writeHeader(outcomesAt);
+	}
+
+	/**
+	 * Adds a move to the chunk, with what was visible before it was made. A full chunk is
+	 * written first.
+	 */
+	private void addRecord(long game, Board board, int row, int col) throws IOException {
+		if(records == chunkRecords)
+			writeChunk();
+
+		int cell = 0;
+		for(int r = 0; r < rows; r++) {
+			for(int box = board.index(r, 0), end = box + columns; box < end; box++, cell++) {
+				Minesweeper.BoxState state = board.getStateAt(box);
+				states[cell] = (byte) state.ordinal();
+				counts[cell] = (byte) (state == Minesweeper.BoxState.SHOWN ? board.getMineCountAt(box) : 0);
+			}
+		}
+
+		chunk.putLong(gameColumn + 8 * records, game);
+		chunk.putInt(rowColumn + 4 * records, row);
+		chunk.putInt(colColumn + 4 * records, col);
+		chunk.put(statesColumn + cells * records, states);
+		chunk.put(countsColumn + cells * records, counts);
+		records++;
+		recordsWritten++;
+	}
+
+	/*********** OUTPUT ************/
+
+	/**
+	 * Writes the chunk being filled and starts a new one.
+	 */
+	private void writeChunk() throws IOException {
+		ByteBuffer head = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+		chunk.clear();
+		if(deflater == null) {
+			// Unused room is written too, so every chunk is the same size.
+			head.putInt(records).putInt(chunkBytes).flip();
+			writeFully(head);
+			writeFully(chunk);
+		}
+		else {
+			// Only the used part of each column is compressed.
+			compressed.clear();
+			deflater.reset();
+			deflate(gameColumn, 8 * records);
+			deflate(rowColumn, 4 * records);
+			deflate(colColumn, 4 * records);
+			deflate(statesColumn, cells * records);
+			deflate(countsColumn, cells * records);
+			deflater.finish();
+			while(!deflater.finished())
+				deflater.deflate(compressed);
+			int length = compressed.position();
+			compressed.flip();
+
+			head.putInt(records).putInt(align(length)).flip();
+			writeFully(head);
+			writeFully(compressed);
+			writeFully(ByteBuffer.allocate(align(length) - length));
+		}
+		records = 0;
+	}
+
+	/**
+	 * Feeds part of the chunk to the compressor.
+	 */
+	private void deflate(int offset, int length) {
+		deflater.setInput(chunk.slice(offset, length));
+		while(!deflater.needsInput())
+			deflater.deflate(compressed);
+	}
+
+	private void writeHeader(long outcomesAt) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.put((byte) 'M').put((byte) 'S').put((byte) 'D').put((byte) 'S');
+		header.putInt(VERSION).putInt(rows).putInt(columns).putInt(mines).putInt(chunkRecords);
+		header.putInt(deflater == null ? 0 : COMPRESSED).putInt(chunkBytes);
+		header.putLong(gamesWritten).putLong(recordsWritten).putLong(outcomesAt);
+		header.clear();
+		out.position(0);
+		writeFully(header);
+	}
+
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining())
+			out.write(buffer);
+	}
+}
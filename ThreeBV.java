@@ -0,0 +1,154 @@
+import java.util.Arrays;
+
+/**
+ * Works out the 3BV of a board: the smallest number of clicks needed to clear it without flags.
+ * Every region of connected boxes with no mines around them takes one click (the cascade shows
+ * the region and its border), and every numbered box that doesn't touch such a region takes one click.
+ *
+ * The regions are found once with a union-find over the empty boxes. After that each box knows
+ * which click it belongs to, so keeping track of how much of the 3BV has been solved is O(1)
+ * per shown or hidden box.
+ *
+ * @author martin
+ *
+ */
+public class ThreeBV {
+
+	private final Board board;		// The board, for the box indexes.
+	private final int[] unit;		// The click showing each box solves (the index of a box), or -1 if none.
+	private final int[] shownInUnit;// The number of shown boxes of each click, indexed like unit.
+	private final int total;		// The 3BV of the board.
+	private int solved;				// The number of clicks whose boxes have been shown.
+
+	/**
+	 * Works out the 3BV of a board.
+	 * @param board The board. Only its mines and counts are used.
+	 */
+	public ThreeBV(Board board) {
+		this.board = board;
+		int rows = board.getRows();
+		int columns = board.getColumns();
+		int size = board.getSize();
+		int[] neighbours = board.getNeighbourOffsets();
+
+		// Padding boxes are never empty, so the neighbour loops below need no edge checks.
+		boolean[] empty = new boolean[size];
+		for(int row = 0; row < rows; row++) {
+			for(int box = board.index(row, 0), end = box + columns; box < end; box++)
+				empty[box] = !board.hasMineAt(box) && board.getMineCountAt(box) == 0;
+		}
+
+		// Join every empty box with the empty boxes around it. Looking back (the negative
+		// offsets) is enough since the other directions are joined from the other side.
+		int[] parent = new int[size];
+		int[] rank = new int[size];
+		for(int i = 0; i < size; i++)
+			parent[i] = i;
+
+		for(int box = 0; box < size; box++) {
+			if(!empty[box])
+				continue;
+			for(int offset : neighbours) {
+				if(offset < 0 && empty[box + offset])
+					union(parent, rank, box, box + offset);
+			}
+		}
+
+		// Empty boxes belong to their region. Numbered boxes are a click of their own if they
+		// don't touch a region; if they do, the region's click shows them. Mines belong to nothing.
+		unit = new int[size];
+		Arrays.fill(unit, -1);
+		int count = 0;
+		for(int row = 0; row < rows; row++) {
+			for(int box = board.index(row, 0), end = box + columns; box < end; box++) {
+				if(board.hasMineAt(box))
+					continue;
+
+				if(empty[box]) {
+					unit[box] = find(parent, box);
+				}
+				else {
+					unit[box] = box;
+					for(int offset : neighbours) {
+						if(empty[box + offset])
+							unit[box] = -1;
+					}
+				}
+				if(unit[box] == box)
+					count++;
+			}
+		}
+
+		total = count;
+		shownInUnit = new int[size];
+	}
+
+	/**
+	 * Returns the root of a box's set, compressing the path on the way.
+	 */
+	private static int find(int[] parent, int box) {
+		int root = box;
+		while(parent[root] != root)
+			root = parent[root];
+		while(parent[box] != root) {
+			int next = parent[box];
+			parent[box] = root;
+			box = next;
+		}
+		return root;
+	}
+
+	/**
+	 * Joins the sets of two boxes (union by rank).
+	 */
+	private static void union(int[] parent, int[] rank, int a, int b) {
+		a = find(parent, a);
+		b = find(parent, b);
+		if(a == b)
+			return;
+		if(rank[a] < rank[b]) {
+			parent[a] = b;
+		}
+		else {
+			parent[b] = a;
+			if(rank[a] == rank[b])
+				rank[a]++;
+		}
+	}
+
+	/**
+	 * Call when a box goes into the shown state.
+	 * @param row The row.
+	 * @param col The column.
+	 */
+	public void boxShown(int row, int col) {
+		int u = unit[board.index(row, col)];
+		if(u >= 0 && shownInUnit[u]++ == 0)
+			solved++;
+	}
+
+	/**
+	 * Call when a shown box goes back to another state (undo).
+	 * @param row The row.
+	 * @param col The column.
+	 */
+	public void boxHidden(int row, int col) {
+		int u = unit[board.index(row, col)];
+		if(u >= 0 && --shownInUnit[u] == 0)
+			solved--;
+	}
+
+	/**
+	 * Returns the 3BV of the board.
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * Returns how much of the 3BV has been solved so far.
+	 */
+	public int getSolved() {
+		return solved;
+	}
+}
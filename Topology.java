@@ -0,0 +1,247 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Which boxes are next to which, for boards that aren't the usual square grid: a torus where
+ * the edges wrap around, a hexagonal grid, or any graph read from a file.
+ *
+ * A topology is worked out once and kept in compressed sparse row form: the boxes next to
+ * box i are neighbours[offsets[i]] up to (not including) neighbours[offsets[i + 1]]. Walking
+ * that range is one array read per neighbour, just like Board's offset table, so no mode pays
+ * for asking "which topology is this?" while counting or cascading.
+ *
+ * Grid topologies number their boxes row by row (box = row * columns + col). A graph read from
+ * a file is one row of boxes. getShape() tells how the boxes are laid out when drawn.
+ *
+ * @author martin
+ *
+ */
+public class Topology {
+
+	/**
+	 * How the boxes are laid out when drawn.
+	 */
+	public enum Shape {
+		GRID,	// Rows of squares (square and torus).
+		HEX,	// Rows of squares, odd rows shifted half a box to the right.
+		GRAPH	// No layout; the edges have to be drawn.
+	}
+
+	private final String name;		// For messages, e.g. "torus 20x20".
+	private final int rows;			// The number of rows, 1 for a graph.
+	private final int columns;		// The number of boxes in a row.
+	private final int[] offsets;	// Where the neighbours of each box start, plus one last entry.
+	private final int[] neighbours;	// The neighbours of every box, one box after the other.
+	private final Shape shape;
+
+	private Topology(String name, Shape shape, int rows, int columns, int[][] adjacency) {
+		this.name = name;
+		this.shape = shape;
+		this.rows = rows;
+		this.columns = columns;
+
+		offsets = new int[adjacency.length + 1];
+		for(int box = 0; box < adjacency.length; box++)
+			offsets[box + 1] = offsets[box] + adjacency[box].length;
+
+		neighbours = new int[offsets[adjacency.length]];
+		for(int box = 0; box < adjacency.length; box++)
+			System.arraycopy(adjacency[box], 0, neighbours, offsets[box], adjacency[box].length);
+	}
+
+	/**
+	 * The usual bounded grid where every box has up to eight neighbours.
+	 */
+	public static Topology square(int rows, int columns) {
+		return grid("square", rows, columns, false);
+	}
+
+	/**
+	 * A grid whose left and right edges, and top and bottom edges, are joined, so every box
+	 * has eight neighbours.
+	 * @param rows The number of rows (at least 3).
+	 * @param columns The number of columns (at least 3).
+	 */
+	public static Topology torus(int rows, int columns) {
+		if(rows < 3 || columns < 3)
+			throw new IllegalArgumentException("A torus needs at least 3 rows and 3 columns.");
+		return grid("torus", rows, columns, true);
+	}
+
+	/**
+	 * Builds the square or torus grid from the eight Directions.
+	 */
+	private static Topology grid(String name, int rows, int columns, boolean wrap) {
+		Direction[] directions = Direction.values();
+		int[][] adjacency = new int[rows * columns][];
+		int[] around = new int[directions.length];
+
+		for(int row = 0; row < rows; row++) {
+			for(int col = 0; col < columns; col++) {
+				int count = 0;
+				for(Direction d : directions) {
+					int r = row + d.getRow();
+					int c = col + d.getCol();
+					if(wrap) {
+						r = (r + rows) % rows;
+						c = (c + columns) % columns;
+					}
+					else if(r < 0 || r >= rows || c < 0 || c >= columns) {
+						continue;
+					}
+					around[count++] = r * columns + c;
+				}
+				adjacency[row * columns + col] = Arrays.copyOf(around, count);
+			}
+		}
+		return new Topology(name + " " + rows + "x" + columns, Shape.GRID, rows, columns, adjacency);
+	}
+
+	/**
+	 * A bounded grid of hexagons. Odd rows are drawn shifted half a box to the right, so
+	 * every box has up to six neighbours: two in its own row and two in each row next to it.
+	 */
+	public static Topology hex(int rows, int columns) {
+		int[][] adjacency = new int[rows * columns][];
+		int[] around = new int[6];
+
+		for(int row = 0; row < rows; row++) {
+			// The columns above and below that touch this box depend on the shift of the row.
+			int shift = (row % 2 == 0) ? -1 : 0;
+			for(int col = 0; col < columns; col++) {
+				int count = 0;
+				if(col > 0)
+					around[count++] = row * columns + col - 1;
+				if(col < columns - 1)
+					around[count++] = row * columns + col + 1;
+				for(int r = row - 1; r <= row + 1; r += 2) {
+					if(r < 0 || r >= rows)
+						continue;
+					for(int c = col + shift; c <= col + shift + 1; c++) {
+						if(c >= 0 && c < columns)
+							around[count++] = r * columns + c;
+					}
+				}
+				adjacency[row * columns + col] = Arrays.copyOf(around, count);
+			}
+		}
+		return new Topology("hex " + rows + "x" + columns, Shape.HEX, rows, columns, adjacency);
+	}
+
+	/**
+	 * Reads a graph from a text file. The first line is the number of boxes, and every line
+	 * after that is an edge: two box numbers (starting at 0) separated by spaces. Edges go
+	 * both ways, and each may only be given once. Blank lines and lines starting with # are
+	 * skipped.
+	 * @param file The file.
+	 * @return The graph.
+	 * @throws IOException If the file can't be read or isn't in this format.
+	 */
+	public static Topology load(Path file) throws IOException {
+		int size = -1;
+		int[] degree = null;
+		int[] edges = new int[64];
+		int edgeCount = 0;
+
+		try(BufferedReader in = Files.newBufferedReader(file)) {
+			String line;
+			int lineNumber = 0;
+			while((line = in.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if(line.isEmpty() || line.startsWith("#"))
+					continue;
+
+				String[] parts = line.split("\\s+");
+				try {
+					if(size < 0) {
+						size = Integer.parseInt(parts[0]);
+						if(size <= 0)
+							throw new IOException(file + ":" + lineNumber + ": the number of boxes must be positive, got " + size);
+						degree = new int[size];
+						continue;
+					}
+					int a = Integer.parseInt(parts[0]);
+					int b = Integer.parseInt(parts[1]);
+					if(a < 0 || a >= size || b < 0 || b >= size || a == b)
+						throw new IOException(file + ":" + lineNumber + ": bad edge " + line);
+					if(edgeCount == edges.length)
+						edges = Arrays.copyOf(edges, edgeCount * 2);
+					edges[edgeCount++] = a;
+					edges[edgeCount++] = b;
+					degree[a]++;
+					degree[b]++;
+				}
+				catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+					throw new IOException(file + ":" + lineNumber + ": expected numbers, got " + line);
+				}
+			}
+		}
+		if(size < 0)
+			throw new IOException(file + ": no boxes");
+
+		int[][] adjacency = new int[size][];
+		for(int box = 0; box < size; box++)
+			adjacency[box] = new int[degree[box]];
+		int[] filled = new int[size];
+		for(int i = 0; i < edgeCount; i += 2) {
+			int a = edges[i];
+			int b = edges[i + 1];
+			adjacency[a][filled[a]++] = b;
+			adjacency[b][filled[b]++] = a;
+		}
+
+		// A box given twice as a neighbour would have its mine counted twice.
+		for(int box = 0; box < size; box++) {
+			int[] around = adjacency[box];
+			Arrays.sort(around);
+			for(int k = 1; k < around.length; k++) {
+				if(around[k] == around[k - 1])
+					throw new IOException(file + ": edge " + Math.min(box, around[k]) + " " + Math.max(box, around[k]) + " is given twice");
+			}
+		}
+		return new Topology("graph " + file.getFileName(), Shape.GRAPH, 1, size, adjacency);
+	}
+
+	/**
+	 * Returns where the neighbours of each box start in getNeighbours(), with one extra entry
+	 * at the end. The array is shared and must not be changed.
+	 */
+	public int[] getOffsets() {
+		return offsets;
+	}
+
+	/**
+	 * Returns the neighbours of every box, one box after the other.
+	 * The array is shared and must not be changed.
+	 */
+	public int[] getNeighbours() {
+		return neighbours;
+	}
+
+	/**
+	 * Returns the number of boxes.
+	 */
+	public int getSize() {
+		return offsets.length - 1;
+	}
+
+	public Shape getShape() {
+		return shape;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,216 @@
+import java.util.Arrays;
+
+/**
+ * The game logic of a board on any Topology (torus, hex grid, graph), without any drawing.
+ *
+ * It plays the same as Board, but the boxes around a box come from the topology's
+ * compressed sparse row table instead of Board's fixed offsets. Counting, cascades and
+ * chording each walk one range of that table, so a neighbour costs one array read here too.
+ *
+ * Boxes are numbered like the topology numbers them.
+ *
+ * @author martin
+ *
+ */
+public class TopologyBoard {
+
+	private static final Minesweeper.BoxState[] STATES = Minesweeper.BoxState.values();
+
+	private static final byte HIDDEN = (byte) Minesweeper.BoxState.HIDDEN.ordinal();
+	private static final byte SHOWN = (byte) Minesweeper.BoxState.SHOWN.ordinal();
+	private static final byte FLAGGED = (byte) Minesweeper.BoxState.FLAGGED.ordinal();
+
+	private final Topology topology;
+	private final int[] offsets;		// The topology's table: where each box's neighbours start.
+	private final int[] neighbours;		// The topology's table: the neighbours.
+
+	private final byte[] mines;			// 1 if the box has a mine, 0 if not.
+	private final int[] counts;			// The number of mines around each box (a graph box may have hundreds).
+	private final byte[] states;		// The ordinal of each box's BoxState.
+	private final int numberOfMines;	// The number of mines on the board.
+
+	/** Winning/Losing conditions **/
+
+	private int boxesShown;				// The number of boxes without a mine in the shown state.
+	private int flagsPlaced;			// The number of flags placed.
+	private boolean hitMine;			// Represents if a box with a mine has been shown.
+
+	private int[] stack = new int[16];	// Boxes waiting to be looked at by a cascade.
+
+	/**
+	 * Creates a board with every box hidden.
+	 * @param topology Which boxes are next to which.
+	 * @param mines Where the mines are placed, one entry per box of the topology.
+	 */
+	public TopologyBoard(Topology topology, boolean[] mines) {
+		if(mines.length != topology.getSize())
+			throw new IllegalArgumentException("Expected " + topology.getSize() + " boxes for " + topology + ", got " + mines.length);
+
+		this.topology = topology;
+		offsets = topology.getOffsets();
+		neighbours = topology.getNeighbours();
+
+		int size = mines.length;
+		this.mines = new byte[size];
+		counts = new int[size];
+		states = new byte[size];
+
+		int count = 0;
+		for(int box = 0; box < size; box++) {
+			if(mines[box]) {
+				this.mines[box] = 1;
+				count++;
+			}
+		}
+		numberOfMines = count;
+
+		for(int box = 0; box < size; box++) {
+			int mine = 0;
+			for(int k = offsets[box], end = offsets[box + 1]; k < end; k++)
+				mine += this.mines[neighbours[k]];
+			counts[box] = mine;
+		}
+	}
+
+	/*********** MOVES ************/
+
+	/**
+	 * Reveals a hidden box, cascading if it has no mines around it.
+	 * @param box The box.
+	 * @return The number of boxes revealed.
+	 */
+	public int reveal(int box) {
+		if(states[box] != HIDDEN)
+			return 0;
+		return cascade(box);
+	}
+
+	/**
+	 * Reveals the hidden boxes around a shown box when the right number of flags has been
+	 * placed around it (chording).
+	 * @param box The box.
+	 * @return The number of boxes revealed.
+	 */
+	public int chord(int box) {
+		if(states[box] != SHOWN || mines[box] != 0 || counts[box] == 0)
+			return 0;
+
+		int start = offsets[box];
+		int end = offsets[box + 1];
+		int flags = 0;
+		for(int k = start; k < end; k++) {
+			if(states[neighbours[k]] == FLAGGED)
+				flags++;
+		}
+		if(flags != counts[box])
+			return 0;
+
+		int revealed = 0;
+		for(int k = start; k < end; k++) {
+			if(states[neighbours[k]] == HIDDEN)
+				revealed += cascade(neighbours[k]);
+		}
+		return revealed;
+	}
+
+	/**
+	 * Flags a hidden box, or unflags a flagged one.
+	 * @param box The box.
+	 * @return True if the box changed.
+	 */
+	public boolean toggleFlag(int box) {
+		if(states[box] == HIDDEN) {
+			states[box] = FLAGGED;
+			flagsPlaced++;
+			return true;
+		}
+		if(states[box] == FLAGGED) {
+			states[box] = HIDDEN;
+			flagsPlaced--;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Reveals a hidden box and cascades from it.
+	 * @param start The box.
+	 * @return The number of boxes revealed.
+	 */
+	private int cascade(int start) {
+		states[start] = SHOWN;
+		if(mines[start] != 0) {
+			hitMine = true;
+			return 1;
+		}
+		boxesShown++;
+		if(counts[start] != 0)
+			return 1;
+
+		int revealed = 1;
+		int top = 0;
+		stack[top++] = start;
+		while(top > 0) {
+			int box = stack[--top];
+			for(int k = offsets[box], end = offsets[box + 1]; k < end; k++) {
+				int next = neighbours[k];
+				if(states[next] != HIDDEN)
+					continue;
+
+				// A box with no mines around can't have a mine next to it.
+				states[next] = SHOWN;
+				boxesShown++;
+				revealed++;
+				if(counts[next] == 0) {
+					if(top == stack.length)
+						stack = Arrays.copyOf(stack, top * 2);
+					stack[top++] = next;
+				}
+			}
+		}
+		return revealed;
+	}
+
+	/*********** BOXES ************/
+
+	public Minesweeper.BoxState getState(int box) {
+		return STATES[states[box]];
+	}
+
+	public boolean hasMine(int box) {
+		return mines[box] != 0;
+	}
+
+	public int getMineCount(int box) {
+		return counts[box];
+	}
+
+	public Topology getTopology() {
+		return topology;
+	}
+
+	/*********** GAME ************/
+
+	public int getBoxesShown() {
+		return boxesShown;
+	}
+
+	public int getFlagsPlaced() {
+		return flagsPlaced;
+	}
+
+	public boolean hitMine() {
+		return hitMine;
+	}
+
+	/**
+	 * Returns true once every box without a mine has been shown and no mine has.
+	 */
+	public boolean isCleared() {
+		return !hitMine && boxesShown == states.length - numberOfMines;
+	}
+
+	public int getNumberOfMines() {
+		return numberOfMines;
+	}
+}
@@ -0,0 +1,175 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers solved positions by their 64-bit Zobrist hash, so a solver that meets the same
+ * position again (in another game, or a few moves later) doesn't have to solve it again.
+ *
+ * The table is split into stripes by the top bits of the hash, each with its own lock, so
+ * solvers on several threads can share one table without waiting on each other much. Every
+ * stripe keeps its entries in least recently used order and drops the oldest ones when it
+ * goes over its share of the memory budget.
+ *
+ * Only the hash is kept, not the position, so two positions with the same hash would share
+ * an answer. With 64 bits that is very unlikely even in very long runs.
+ *
+ * @author martin
+ *
+ */
+public class TranspositionTable {
+
+	private static final int STRIPES = 16;			// A power of two.
+	private static final int ENTRY_BYTES = 96;		// Roughly what a map entry, its key and an empty array take.
+
+	private final long maxBytes;					// The memory budget of the whole table.
+	private final Stripe[] stripes;
+
+	/** Statistics **/
+
+	private final LongAdder hits = new LongAdder();			// Lookups that found an answer.
+	private final LongAdder misses = new LongAdder();		// Lookups that didn't.
+	private final LongAdder evictions = new LongAdder();	// Entries dropped to stay in budget.
+
+	/**
+	 * One lock's worth of the table, in least recently used order.
+	 */
+	private static class Stripe {
+		final LinkedHashMap<Long, double[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+		long bytes;	// The memory taken by the entries, roughly.
+	}
+
+	/**
+	 * Creates an empty table.
+	 * @param maxBytes Roughly how much memory the entries may take.
+	 */
+	public TranspositionTable(long maxBytes) {
+		this.maxBytes = maxBytes;
+		stripes = new Stripe[STRIPES];
+		for(int i = 0; i < STRIPES; i++)
+			stripes[i] = new Stripe();
+	}
+
+	private Stripe stripe(long hash) {
+		// The map uses the low bits, so pick the stripe with the high ones.
+		return stripes[(int) (hash >>> 60) & (STRIPES - 1)];
+	}
+
+	private static long bytes(double[] value) {
+		return ENTRY_BYTES + 8L * value.length;
+	}
+
+	/**
+	 * Looks up the answer for a position.
+	 * @param hash The hash of the position.
+	 * @return The answer, which must not be changed, or null.
+	 */
+	public double[] get(long hash) {
+		Stripe stripe = stripe(hash);
+		double[] value;
+		synchronized(stripe) {
+			value = stripe.entries.get(hash);
+		}
+		if(value != null)
+			hits.increment();
+		else
+			misses.increment();
+		return value;
+	}
+
+	/**
+	 * Remembers the answer for a position, dropping the least recently used answers if the
+	 * stripe goes over budget.
+	 * @param hash The hash of the position.
+	 * @param value The answer. It must not be changed afterwards.
+	 */
+	public void put(long hash, double[] value) {
+		Stripe stripe = stripe(hash);
+		long budget = maxBytes / STRIPES;
+		synchronized(stripe) {
+			double[] old = stripe.entries.put(hash, value);
+			if(old != null)
+				stripe.bytes -= bytes(old);
+			stripe.bytes += bytes(value);
+
+			Iterator<Map.Entry<Long, double[]>> eldest = stripe.entries.entrySet().iterator();
+			while(stripe.bytes > budget && eldest.hasNext()) {
+				stripe.bytes -= bytes(eldest.next().getValue());
+				eldest.remove();
+				evictions.increment();
+			}
+		}
+	}
+
+	/**
+	 * Forgets every answer. The statistics are kept.
+	 */
+	public void clear() {
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				stripe.entries.clear();
+				stripe.bytes = 0;
+			}
+		}
+	}
+
+	/*********** STATISTICS ************/
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns the share of lookups that found an answer, from 0 to 1.
+	 */
+	public double getHitRate() {
+		long h = hits.sum();
+		long lookups = h + misses.sum();
+		return lookups == 0 ? 0 : (double) h / lookups;
+	}
+
+	/**
+	 * Returns the number of answers in the table.
+	 */
+	public int getEntries() {
+		int entries = 0;
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				entries += stripe.entries.size();
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Returns roughly how much memory the answers take, in bytes.
+	 */
+	public long getMemoryBytes() {
+		long bytes = 0;
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				bytes += stripe.bytes;
+			}
+		}
+		return bytes;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public String toString() {
+		return String.format("%d entries, %d/%d KB, hit rate %.1f%% (%d hits, %d misses), %d evictions",
+				getEntries(), getMemoryBytes() / 1024, maxBytes / 1024, getHitRate() * 100,
+				getHits(), getMisses(), getEvictions());
+	}
+}
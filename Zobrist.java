@@ -0,0 +1,35 @@
+/**
+ * Zobrist keys: a random-looking 64-bit number for every (position, value) pair. The hash of a
+ * set of pairs is the XOR of their keys, so changing one value changes the hash in O(1):
+ * XOR out the old key and XOR in the new one.
+ *
+ * The keys are worked out by mixing the bits of the pair (the SplitMix64 finalizer) instead of
+ * being looked up in a table, so every board size, and every frontier pattern, gets the same
+ * keys without a table to build or keep in memory.
+ *
+ * @author martin
+ *
+ */
+public class Zobrist {
+
+	/**
+	 * Returns the key of a value at a position.
+	 * @param position The position, e.g. the index of a box.
+	 * @param value The value at that position.
+	 * @return The key.
+	 */
+	public static long key(long position, int value) {
+		long z = position * 0x9E3779B97F4A7C15L + value * 0xD1B54A32D192ED03L + 0x632BE59BD9B4E019L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Returns the key of a value at a position given as a row and a column (either may be
+	 * negative), for patterns placed relative to one of their boxes.
+	 */
+	public static long key(int row, int col, int value) {
+		return key(((long) row << 32) ^ (col & 0xFFFFFFFFL), value);
+	}
+}
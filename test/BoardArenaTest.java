@@ -0,0 +1,100 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Checks that a Board kept in a BoardArena plays exactly like one on the heap.
+ *
+ * Games are played move for move on two boards, one of each, made the same way (with their
+ * mines, or placing them on the first click, or moving them with makeSafe()). After every move
+ * the states, counts, counters, hash and version must match. Boards are released and new ones
+ * made all the time, so blocks are reused with the last board's boxes still in them, and board
+ * sizes go past a slab so some boards get a buffer of their own.
+ *
+ * Run with: java -cp out BoardArenaTest
+ * It exits with 1 if any check fails.
+ *
+ * @author martin
+ *
+ */
+public class BoardArenaTest {
+
+	private static int failures;
+
+	public static void main(String[] args) {
+		BoardArena arena = new BoardArena();
+		Random random = new Random(37);
+		ArrayList<Board> live = new ArrayList<>();
+
+		for(int game = 0; game < 400; game++) {
+			int rows = 1 + random.nextInt(game % 50 == 0 ? 700 : 40);
+			int columns = 1 + random.nextInt(game % 50 == 0 ? 700 : 40);
+			int mines = random.nextInt(rows * columns / 4 + 1);
+			long seed = random.nextLong();
+
+			Board heap, offHeap;
+			int kind = game % 3;
+			if(kind != 1) {
+				boolean[][] field = MinesweeperBatch.placeMines(rows, columns, mines, new Random(seed));
+				heap = new Board(field);
+				offHeap = new Board(field, arena);
+			}
+			else {
+				heap = new Board(rows, columns, mines, new Random(seed));
+				offHeap = new Board(rows, columns, mines, new Random(seed), arena);
+			}
+			if(kind == 2) {
+				int row = random.nextInt(rows);
+				int col = random.nextInt(columns);
+				check(heap.makeSafe(row, col, new Random(seed)) == offHeap.makeSafe(row, col, new Random(seed)), "makeSafe moved a different number of mines");
+			}
+
+			for(int move = 0; move < 30 && !heap.hitMine() && !heap.isCleared(); move++) {
+				int row = random.nextInt(rows);
+				int col = random.nextInt(columns);
+				switch(random.nextInt(4)) {
+				case 0: check(heap.toggleFlag(row, col) == offHeap.toggleFlag(row, col), "toggleFlag differs"); break;
+				case 1: check(heap.chord(row, col) == offHeap.chord(row, col), "chord differs"); break;
+				default: check(heap.reveal(row, col) == offHeap.reveal(row, col), "reveal differs"); break;
+				}
+				compare(heap, offHeap, game);
+			}
+
+			// Keep a few boards alive, so blocks are reused out of order.
+			live.add(offHeap);
+			if(live.size() > 5)
+				live.remove(random.nextInt(live.size())).release();
+		}
+		for(Board board : live)
+			board.release();
+		check(arena.getLiveBlocks() == 0, "blocks still live: " + arena);
+		System.out.println("Arena at the end: " + arena);
+
+		if(failures > 0) {
+			System.out.println(failures + " checks failed");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+	private static void compare(Board heap, Board offHeap, int game) {
+		for(int row = 0; row < heap.getRows(); row++) {
+			for(int col = 0; col < heap.getColumns(); col++) {
+				if(heap.getState(row, col) != offHeap.getState(row, col) || heap.hasMine(row, col) != offHeap.hasMine(row, col)
+						|| heap.getMineCount(row, col) != offHeap.getMineCount(row, col)) {
+					check(false, "game " + game + ": box " + row + "," + col + " differs");
+					return;
+				}
+			}
+		}
+		check(heap.getBoxesShown() == offHeap.getBoxesShown() && heap.getFlagsPlaced() == offHeap.getFlagsPlaced()
+				&& heap.hitMine() == offHeap.hitMine(), "game " + game + ": counters differ");
+		check(heap.getHash() == offHeap.getHash() && heap.getVersion() == offHeap.getVersion(), "game " + game + ": hash or version differs");
+	}
+
+	private static void check(boolean ok, String message) {
+		if(!ok) {
+			failures++;
+			System.out.println("FAILED: " + message);
+		}
+	}
+}
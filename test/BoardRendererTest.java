@@ -0,0 +1,192 @@
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Checks BoardRenderer's pictures and the PNG files it writes.
+ *
+ * Random boards are played a little and drawn at box sizes from 5 to 16 pixels. Every grid
+ * line must stay black, so no number or mine is drawn over it, and every box must be filled
+ * with the colour of its state. Each picture is written as a PNG and read back with ImageIO,
+ * and must match the drawn pixels exactly. Pictures with more than 256 colours (written as
+ * RGBA) and renderAll() are checked the same way.
+ *
+ * Run with: java -cp out BoardRendererTest
+ * It exits with 1 if any check fails.
+ *
+ * @author martin
+ *
+ */
+public class BoardRendererTest {
+
+	private static int failures;
+
+	public static void main(String[] args) throws IOException {
+		Random random = new Random(34);
+
+		for(int game = 0; game < 200; game++) {
+			int rows = 1 + random.nextInt(20);
+			int columns = 1 + random.nextInt(20);
+			Board board = new Board(placeMines(rows, columns, random.nextInt(rows * columns / 4 + 1), random));
+			for(int move = random.nextInt(rows * columns); move > 0; move--) {
+				int row = random.nextInt(rows);
+				int col = random.nextInt(columns);
+				if(random.nextInt(4) == 0)
+					board.toggleFlag(row, col);
+				else if(!board.hasMine(row, col))
+					board.reveal(row, col);
+			}
+
+			BoardRenderer renderer = new BoardRenderer(5 + random.nextInt(12));
+			boolean gameOver = random.nextBoolean();
+			int[] pixels = renderer.render(board, gameOver, null);
+			checkBoxes(board, renderer, pixels, game);
+			checkPng(pixels, renderer.getWidth(board), renderer.getHeight(board), "game " + game);
+		}
+
+		// More than 256 colours are written as RGBA instead of a palette.
+		int[] noise = new int[61 * 37];
+		for(int i = 0; i < noise.length; i++)
+			noise[i] = 0xFF000000 | random.nextInt(1 << 24);
+		checkPng(noise, 61, 37, "noise");
+
+		checkRenderAll(random);
+
+		try {
+			new BoardRenderer(4);
+			check(false, "4-pixel boxes were accepted");
+		}
+		catch(IllegalArgumentException e) {
+			// Expected: the font is 5 pixels tall.
+		}
+
+		if(failures > 0) {
+			System.out.println(failures + " checks failed");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+	/**
+	 * Checks that the grid lines are black and that each box starts with the colour of its state.
+	 */
+	private static void checkBoxes(Board board, BoardRenderer renderer, int[] pixels, int game) {
+		int width = renderer.getWidth(board);
+		int height = renderer.getHeight(board);
+		int step = (height - 1) / board.getRows();
+
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				if((x % step == 0 || y % step == 0) && pixels[y * width + x] != BoardRenderer.BLACK) {
+					check(false, "game " + game + ": grid line drawn over at " + x + "," + y);
+					return;
+				}
+			}
+		}
+
+		for(int row = 0; row < board.getRows(); row++) {
+			for(int col = 0; col < board.getColumns(); col++) {
+				Minesweeper.BoxState state = board.getState(row, col);
+				int expected;
+				if(state == Minesweeper.BoxState.HIDDEN)
+					expected = BoardRenderer.HIDDEN;
+				else if(state == Minesweeper.BoxState.FLAGGED)
+					expected = BoardRenderer.FLAGGED;
+				else if(board.hasMine(row, col))
+					expected = BoardRenderer.MINE;
+				else
+					expected = BoardRenderer.SHOWN;
+
+				// The top left pixel of a box is never part of a glyph.
+				int corner = pixels[(row * step + 1) * width + col * step + 1];
+				check(corner == expected, "game " + game + ": box " + row + "," + col + " is "
+						+ Integer.toHexString(corner) + ", expected " + Integer.toHexString(expected));
+			}
+		}
+	}
+
+	/**
+	 * Writes pixels as a PNG, reads them back with ImageIO and compares them.
+	 */
+	private static void checkPng(int[] pixels, int width, int height, String name) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BoardRenderer.writePng(pixels, width, height, out);
+		compare(ImageIO.read(new ByteArrayInputStream(out.toByteArray())), pixels, width, height, name);
+	}
+
+	/**
+	 * Draws a few boards with renderAll() and compares the files with render().
+	 */
+	private static void checkRenderAll(Random random) throws IOException {
+		BoardRenderer renderer = new BoardRenderer(6);
+		List<Board> boards = new ArrayList<>();
+		for(int i = 0; i < 8; i++) {
+			Board board = new Board(placeMines(10, 12, 20, random));
+			board.toggleFlag(0, 0);
+			boards.add(board);
+		}
+
+		Path directory = Files.createTempDirectory("renderer");
+		try {
+			renderer.renderAll(boards, true, directory, "board");
+			for(int i = 0; i < boards.size(); i++) {
+				Board board = boards.get(i);
+				Path file = directory.resolve("board-" + i + ".png");
+				compare(ImageIO.read(file.toFile()), renderer.render(board, true, null),
+						renderer.getWidth(board), renderer.getHeight(board), file.getFileName().toString());
+				Files.delete(file);
+			}
+		}
+		finally {
+			Files.deleteIfExists(directory);
+		}
+	}
+
+	private static void compare(BufferedImage image, int[] pixels, int width, int height, String name) {
+		if(image == null || image.getWidth() != width || image.getHeight() != height) {
+			check(false, name + ": the PNG could not be read back at " + width + "x" + height);
+			return;
+		}
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				if(image.getRGB(x, y) != pixels[y * width + x]) {
+					check(false, name + ": pixel " + x + "," + y + " is " + Integer.toHexString(image.getRGB(x, y))
+							+ ", expected " + Integer.toHexString(pixels[y * width + x]));
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Places mines on random boxes of a new field.
+	 */
+	private static boolean[][] placeMines(int rows, int columns, int mines, Random random) {
+		boolean[][] field = new boolean[rows][columns];
+		int placed = 0;
+		while(placed < mines) {
+			int row = random.nextInt(rows);
+			int col = random.nextInt(columns);
+			if(!field[row][col]) {
+				field[row][col] = true;
+				placed++;
+			}
+		}
+		return field;
+	}
+
+	private static void check(boolean ok, String message) {
+		if(!ok) {
+			failures++;
+			System.out.println("FAILED: " + message);
+		}
+	}
+}
@@ -0,0 +1,221 @@
+import java.util.Random;
+
+/**
+ * Checks that the first box revealed is safe: Board.makeSafe() on boards made with their mines,
+ * and Board.placeMines() on boards that place them on the first click.
+ *
+ * Boards of every density up to full get a random first box. Afterwards the box and the boxes
+ * around it must have no mine (only the box itself when there isn't room elsewhere, and nothing
+ * when every box has a mine), the number of mines must not change, makeSafe() must only move
+ * the mines that were in the way, and every count must match a new Board made from the mines
+ * that are left. placeMines() must also pick every way of placing the mines equally often.
+ *
+ * Run with: java -cp out BoardSafetyTest
+ * It exits with 1 if any check fails.
+ *
+ * @author martin
+ *
+ */
+public class BoardSafetyTest {
+
+	private static int failures;
+
+	public static void main(String[] args) {
+		Random random = new Random(38);
+
+		for(int game = 0; game < 3000; game++) {
+			int rows = 1 + random.nextInt(game % 10 == 0 ? 3 : 12);
+			int columns = 1 + random.nextInt(game % 10 == 0 ? 3 : 12);
+			int cells = rows * columns;
+			int row = random.nextInt(rows);
+			int col = random.nextInt(columns);
+			int area = (Math.min(row + 1, rows - 1) - Math.max(row - 1, 0) + 1)
+					* (Math.min(col + 1, columns - 1) - Math.max(col - 1, 0) + 1);
+
+			// Every density, with extra games just around the point where the area no longer fits.
+			int mines;
+			switch(game % 4) {
+			case 0: mines = random.nextInt(cells + 1); break;
+			case 1: mines = Math.max(0, cells - area + random.nextInt(2)); break;
+			case 2: mines = Math.max(0, cells - 1 - random.nextInt(2)); break;
+			default: mines = cells; break;
+			}
+
+			checkMakeSafe(MinesweeperBatch.placeMines(rows, columns, mines, random), row, col, area, random, game);
+			checkPlaceMines(new Board(rows, columns, mines, random), row, col, area, game);
+		}
+
+		checkMovedOnce();
+		checkUniform(4, 4, 5, 0, 0, random);	// The 2x2 corner kept free: 12 boxes for 5 mines.
+		checkUniform(3, 3, 6, 1, 1, random);	// Too many mines for the area: only the middle is kept free.
+
+		if(failures > 0) {
+			System.out.println(failures + " checks failed");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+	/**
+	 * Calls makeSafe() on a board made with its mines and checks the board afterwards.
+	 */
+	private static void checkMakeSafe(boolean[][] field, int row, int col, int area, Random random, int game) {
+		Board board = new Board(field);
+		int rows = field.length, columns = field[0].length;
+		int mines = board.getNumberOfMines();
+		int inTheWay = 0;
+		for(int r = 0; r < rows; r++) {
+			for(int c = 0; c < columns; c++) {
+				if(field[r][c] && mustBeFree(r, c, row, col, mines, rows * columns, area))
+					inTheWay++;
+			}
+		}
+
+		int moved = board.makeSafe(row, col, random);
+		check(moved == inTheWay, "game " + game + ": makeSafe moved " + moved + " mines, " + inTheWay + " were in the way");
+		checkBoard(board, row, col, area, mines, game);
+
+		// The mines that weren't in the way stay where they were.
+		for(int r = 0; r < rows; r++) {
+			for(int c = 0; c < columns; c++) {
+				if(field[r][c] && !mustBeFree(r, c, row, col, mines, rows * columns, area))
+					check(board.hasMine(r, c), "game " + game + ": the mine at " + r + "," + c + " was moved");
+			}
+		}
+
+		board.reveal(row, col);
+		check(board.hitMine() == (mines == rows * columns), "game " + game + ": the first reveal hit a mine");
+
+		try {
+			board.makeSafe(row, col, random);
+			check(false, "game " + game + ": makeSafe worked after a box was shown");
+		}
+		catch(IllegalStateException e) {
+			// Expected: mines can't be moved once the player has seen the board.
+		}
+	}
+
+	/**
+	 * Places the mines of a board made without them and checks the board afterwards.
+	 */
+	private static void checkPlaceMines(Board board, int row, int col, int area, int game) {
+		check(!board.areMinesPlaced(), "game " + game + ": a new board has its mines");
+		board.placeMines(row, col);
+		check(board.areMinesPlaced(), "game " + game + ": the mines weren't placed");
+		checkBoard(board, row, col, area, board.getNumberOfMines(), game);
+	}
+
+	/**
+	 * Checks the free boxes, the number of mines and every count of a board.
+	 */
+	private static void checkBoard(Board board, int row, int col, int area, int mines, int game) {
+		int rows = board.getRows(), columns = board.getColumns();
+		boolean[][] field = new boolean[rows][columns];
+		int found = 0;
+		for(int r = 0; r < rows; r++) {
+			for(int c = 0; c < columns; c++) {
+				field[r][c] = board.hasMine(r, c);
+				if(field[r][c])
+					found++;
+				if(mustBeFree(r, c, row, col, mines, rows * columns, area))
+					check(!field[r][c], "game " + game + ": a mine at " + r + "," + c + " next to the first box " + row + "," + col);
+			}
+		}
+		check(found == mines && board.getNumberOfMines() == mines, "game " + game + ": " + found + " mines, expected " + mines);
+
+		Board fresh = new Board(field);
+		for(int r = 0; r < rows; r++) {
+			for(int c = 0; c < columns; c++) {
+				if(board.getMineCount(r, c) != fresh.getMineCount(r, c)) {
+					check(false, "game " + game + ": box " + r + "," + c + " counts " + board.getMineCount(r, c)
+							+ " mines, a new board counts " + fresh.getMineCount(r, c));
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true if box (r, c) must have no mine when (row, col) is the first box revealed.
+	 */
+	private static boolean mustBeFree(int r, int c, int row, int col, int mines, int cells, int area) {
+		if(mines <= cells - area)
+			return Math.abs(r - row) <= 1 && Math.abs(c - col) <= 1;
+		return mines < cells && r == row && c == col;
+	}
+
+	/**
+	 * A 4x4 board with 7 mines, all in the 3x3 area of the first box. There is just room for
+	 * them outside it, so every mine has to find the one box the others haven't taken.
+	 */
+	private static void checkMovedOnce() {
+		boolean[][] field = new boolean[4][4];
+		for(int r = 0; r < 3; r++) {
+			for(int c = 0; c < 3; c++)
+				field[r][c] = r != c || r == 0;	// All but (1, 1) and (2, 2).
+		}
+		Board board = new Board(field);
+		check(board.makeSafe(1, 1, new Random(1)) == 7, "not all 7 mines in the area were moved");
+		checkBoard(board, 1, 1, 9, 7, -1);
+		for(int box = 0; box < 16; box++) {
+			if(box / 4 == 3 || box % 4 == 3)
+				check(board.hasMine(box / 4, box % 4), "box " + box / 4 + "," + box % 4 + " outside the area has no mine");
+		}
+	}
+
+	/**
+	 * Places mines on many boards with the same first box and checks that every way of
+	 * placing them comes up about equally often (a chi-squared test).
+	 */
+	private static void checkUniform(int rows, int columns, int mines, int row, int col, Random random) {
+		int[] seen = new int[1 << (rows * columns)];
+		int layouts = 0;
+		int samples = 200000;
+		for(int i = 0; i < samples; i++) {
+			Board board = new Board(rows, columns, mines, random);
+			board.placeMines(row, col);
+			int bits = 0;
+			for(int r = 0; r < rows; r++) {
+				for(int c = 0; c < columns; c++) {
+					if(board.hasMine(r, c))
+						bits |= 1 << (r * columns + c);
+				}
+			}
+			if(seen[bits]++ == 0)
+				layouts++;
+		}
+
+		// Every layout that keeps the first box (and its area, if there is room) free.
+		int cells = rows * columns;
+		int area = (Math.min(row + 1, rows - 1) - Math.max(row - 1, 0) + 1)
+				* (Math.min(col + 1, columns - 1) - Math.max(col - 1, 0) + 1);
+		int free = mines <= cells - area ? area : 1;
+		long expectedLayouts = choose(cells - free, mines);
+		check(layouts == expectedLayouts, rows + "x" + columns + ": " + layouts + " layouts, expected " + expectedLayouts);
+
+		double expected = (double) samples / expectedLayouts;
+		double chiSquared = 0;
+		for(int count : seen) {
+			if(count > 0)
+				chiSquared += (count - expected) * (count - expected) / expected;
+		}
+		// The mean is the degrees of freedom and the spread sqrt(2 * df), so allow five spreads.
+		double df = expectedLayouts - 1;
+		check(chiSquared < df + 5 * Math.sqrt(2 * df), rows + "x" + columns + ": chi-squared " + chiSquared
+				+ " with " + (long) df + " degrees of freedom");
+	}
+
+	private static long choose(int n, int k) {
+		long result = 1;
+		for(int i = 1; i <= k; i++)
+			result = result * (n - k + i) / i;
+		return result;
+	}
+
+	private static void check(boolean ok, String message) {
+		if(!ok) {
+			failures++;
+			System.out.println("FAILED: " + message);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures how clearing a big ConcurrentBoard scales with the number of players.
+ *
+ * The players split the boxes without a mine between them (player p takes every box whose
+ * number is p modulo the players, in a shuffled order) and reveal their share all at once,
+ * so together they clear the board. Each player count is run a few times to warm up before
+ * the timed runs, and the best time is printed.
+ *
+ * Run with: java -cp out ConcurrentBoardBenchmark [size] [runs]
+ *
+ * @author martin
+ *
+ */
+public class ConcurrentBoardBenchmark {
+
+	public static void main(String[] args) throws InterruptedException {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		Random random = new Random(26);
+		boolean[][] mines = placeMines(size, size, size * size / 5, random);
+
+		// The boxes without a mine, shuffled so the players don't walk the board in step.
+		int[] boxes = new int[size * size];
+		int safe = 0;
+		for(int box = 0; box < boxes.length; box++) {
+			if(!mines[box / size][box % size])
+				boxes[safe++] = box;
+		}
+		for(int i = safe - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int box = boxes[i];
+			boxes[i] = boxes[j];
+			boxes[j] = box;
+		}
+
+		System.out.println(size + "x" + size + " board, " + safe + " boxes to clear, "
+				+ Runtime.getRuntime().availableProcessors() + " processors");
+		double single = 0;
+		for(int players = 1; players <= 8; players *= 2) {
+			long best = Long.MAX_VALUE;
+			for(int run = 0; run < runs + 2; run++) {
+				long time = clear(new ConcurrentBoard(mines), boxes, safe, size, players);
+				if(run >= 2)
+					best = Math.min(best, time);
+			}
+			if(players == 1)
+				single = best;
+			System.out.printf("%d players: %7.1f ms, %6.1f M boxes/s, speedup %.2f%n", players, best / 1e6,
+					safe / (best / 1e9) / 1e6, single / best);
+		}
+	}
+
+	/**
+	 * Clears a board with a number of players.
+	 * @return The time it took, in nanoseconds.
+	 */
+	private static long clear(ConcurrentBoard board, int[] boxes, int safe, int size, int players) throws InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[players];
+		for(int p = 0; p < players; p++) {
+			int first = p;
+			threads[p] = new Thread(() -> {
+				try {
+					start.await();
+				}
+				catch(InterruptedException e) {
+					return;
+				}
+				for(int i = first; i < safe; i += players)
+					board.reveal(boxes[i] / size, boxes[i] % size);
+			});
+			threads[p].start();
+		}
+
+		long time = System.nanoTime();
+		start.countDown();
+		for(Thread thread : threads)
+			thread.join();
+		time = System.nanoTime() - time;
+
+		if(!board.isCleared())
+			throw new IllegalStateException("The board was not cleared");
+		return time;
+	}
+
+	/**
+	 * Places mines on random boxes of a new field.
+	 */
+	private static boolean[][] placeMines(int rows, int columns, int mines, Random random) {
+		boolean[][] field = new boolean[rows][columns];
+		int placed = 0;
+		while(placed < mines) {
+			int row = random.nextInt(rows);
+			int col = random.nextInt(columns);
+			if(!field[row][col]) {
+				field[row][col] = true;
+				placed++;
+			}
+		}
+		return field;
+	}
+}
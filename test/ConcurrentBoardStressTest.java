@@ -0,0 +1,152 @@
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks that ConcurrentBoard's counters stay exact when many players move at once.
+ *
+ * Every round, a number of players reveal, flag and unflag random boxes of the same
+ * board at the same time. When they are done, the board is counted box by box and must agree
+ * with getBoxesShown(), getFlagsPlaced() and with what the players' calls returned: every box
+ * is revealed by exactly one call. A second kind of round only reveals, and
+ * then every shown box with no mines around it must have no hidden box around it either.
+ *
+ * Run with: java -cp out ConcurrentBoardStressTest [rounds]
+ * It exits with 1 if any check fails.
+ *
+ * @author martin
+ *
+ */
+public class ConcurrentBoardStressTest {
+
+	private static final int SIZE = 200;			// The rows and columns of the board.
+	private static final int MOVES = 20000;			// Moves per player per round.
+
+	private static int failures;
+
+	public static void main(String[] args) throws InterruptedException {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		Random random = new Random(26);
+
+		for(int players = 1; players <= 8; players *= 2) {
+			for(int round = 0; round < rounds; round++) {
+				boolean[][] mines = placeMines(SIZE, SIZE, SIZE * SIZE / 10, random);
+				runRound(new ConcurrentBoard(mines), players, random.nextLong(), round % 2 == 0);
+			}
+			System.out.println(players + " players: " + rounds + " rounds checked");
+		}
+
+		if(failures > 0) {
+			System.out.println(failures + " checks failed");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+	/**
+	 * Lets the players loose on a board and checks it afterwards.
+	 * @param withFlags False for a round of reveals only.
+	 */
+	private static void runRound(ConcurrentBoard board, int players, long seed, boolean withFlags) throws InterruptedException {
+		AtomicLong revealed = new AtomicLong();		// What the reveal calls returned, added up.
+		AtomicLong toggles = new AtomicLong();		// The flag calls that changed a box.
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[players];
+
+		for(int p = 0; p < players; p++) {
+			Random random = new Random(seed + p);
+			threads[p] = new Thread(() -> {
+				try {
+					start.await();
+				}
+				catch(InterruptedException e) {
+					return;
+				}
+				long myRevealed = 0;
+				for(int i = 0; i < MOVES; i++) {
+					int row = random.nextInt(SIZE);
+					int col = random.nextInt(SIZE);
+					if(withFlags && random.nextInt(4) == 0) {
+						if(board.toggleFlag(row, col))
+							toggles.incrementAndGet();
+					}
+					else {
+						myRevealed += board.reveal(row, col);
+					}
+				}
+				revealed.addAndGet(myRevealed);
+			});
+			threads[p].start();
+		}
+		start.countDown();
+		for(Thread thread : threads)
+			thread.join();
+
+		int shown = 0, shownMines = 0, flagged = 0;
+		for(int row = 0; row < SIZE; row++) {
+			for(int col = 0; col < SIZE; col++) {
+				Minesweeper.BoxState state = board.getState(row, col);
+				if(state == Minesweeper.BoxState.SHOWN) {
+					if(board.hasMine(row, col))
+						shownMines++;
+					else
+						shown++;
+				}
+				else if(state == Minesweeper.BoxState.FLAGGED) {
+					flagged++;
+				}
+			}
+		}
+
+		check(board.getBoxesShown() == shown, "boxes shown " + board.getBoxesShown() + ", counted " + shown);
+		check(board.getFlagsPlaced() == flagged, "flags placed " + board.getFlagsPlaced() + ", counted " + flagged);
+		check(revealed.get() == shown + shownMines, "reveals returned " + revealed.get() + ", counted " + (shown + shownMines));
+		check(toggles.get() % 2 == flagged % 2, toggles.get() + " flag changes can't leave " + flagged + " flags");
+		check(board.hitMine() == (shownMines > 0), "hitMine is " + board.hitMine() + " with " + shownMines + " mines shown");
+		if(!withFlags)
+			checkCascades(board);
+	}
+
+	/**
+	 * Checks that no hidden box is left next to a shown box with no mines around it.
+	 */
+	private static void checkCascades(ConcurrentBoard board) {
+		for(int row = 0; row < SIZE; row++) {
+			for(int col = 0; col < SIZE; col++) {
+				if(board.getState(row, col) != Minesweeper.BoxState.SHOWN || board.hasMine(row, col)
+						|| board.getMineCount(row, col) != 0)
+					continue;
+				for(Direction d : Direction.values()) {
+					int r = row + d.getRow();
+					int c = col + d.getCol();
+					if(r >= 0 && r < SIZE && c >= 0 && c < SIZE)
+						check(board.getState(r, c) != Minesweeper.BoxState.HIDDEN, "hidden box " + r + "," + c + " next to an empty box");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Places mines on random boxes of a new field.
+	 */
+	private static boolean[][] placeMines(int rows, int columns, int mines, Random random) {
+		boolean[][] field = new boolean[rows][columns];
+		int placed = 0;
+		while(placed < mines) {
+			int row = random.nextInt(rows);
+			int col = random.nextInt(columns);
+			if(!field[row][col]) {
+				field[row][col] = true;
+				placed++;
+			}
+		}
+		return field;
+	}
+
+	private static void check(boolean ok, String message) {
+		if(!ok) {
+			failures++;
+			System.out.println("FAILED: " + message);
+		}
+	}
+}
@@ -0,0 +1,83 @@
+import java.util.Random;
+
+/**
+ * Checks that HintEngine never calls a box with a mine safe, and never suggests a flagged box,
+ * whatever the player has flagged.
+ *
+ * It starts with a 2x4 board where one wrong flag used to make the engine call the mine next
+ * to it safe, then plays random games on small boards where the flags are placed at random,
+ * right or wrong, and checks every hint.
+ *
+ * Run with: java -cp out HintEngineTest
+ * It exits with 1 if any check fails.
+ *
+ * @author martin
+ *
+ */
+public class HintEngineTest {
+
+	private static int failures;
+
+	public static void main(String[] args) {
+		HintEngine engine = new HintEngine(1000);
+
+		// The mine is at the end of the top row. Revealing the first box shows three columns,
+		// leaving the last column hidden next to a 1, and the wrong box gets flagged.
+		Board board = new Board(new boolean[][] {
+			{ false, false, false, true },
+			{ false, false, false, false } });
+		board.reveal(0, 0);
+		board.toggleFlag(1, 3);
+		checkHint(board, engine.requestHint(board).join(), "2x4 with a wrong flag");
+
+		// The right flag isn't proof either: the other box is suggested, as a guess.
+		board.toggleFlag(1, 3);
+		board.toggleFlag(0, 3);
+		HintEngine.Hint hint = engine.requestHint(board).join();
+		check(hint != null && hint.row == 1 && hint.col == 3 && hint.mineProbability == 0.5,
+				"2x4 with the right flag should suggest 1,3 at 50%");
+
+		Random random = new Random(31);
+		int hints = 0;
+		for(int game = 0; game < 300; game++) {
+			board = new Board(MinesweeperBatch.placeMines(8, 8, 12, random));
+			board.makeSafe(4, 4, random);
+			board.reveal(4, 4);
+			while(!board.hitMine() && !board.isCleared()) {
+				// Flag or unflag a few random boxes, whether or not they have a mine.
+				for(int i = random.nextInt(3); i > 0; i--)
+					board.toggleFlag(random.nextInt(8), random.nextInt(8));
+
+				hint = engine.requestHint(board).join();
+				if(hint == null)
+					break;
+				checkHint(board, hint, "game " + game);
+				hints++;
+				board.reveal(hint.row, hint.col);
+			}
+		}
+
+		System.out.println(hints + " hints checked");
+		if(failures > 0) {
+			System.out.println(failures + " checks failed");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+	private static void checkHint(Board board, HintEngine.Hint hint, String where) {
+		if(hint == null)
+			return;
+		check(board.getState(hint.row, hint.col) == Minesweeper.BoxState.HIDDEN,
+				where + ": hint on " + board.getState(hint.row, hint.col) + " box " + hint.row + "," + hint.col);
+		check(hint.mineProbability > 0 || !board.hasMine(hint.row, hint.col),
+				where + ": box " + hint.row + "," + hint.col + " called safe but has a mine");
+	}
+
+	private static void check(boolean ok, String message) {
+		if(!ok) {
+			failures++;
+			System.out.println("FAILED: " + message);
+		}
+	}
+}
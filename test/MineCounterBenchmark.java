@@ -0,0 +1,95 @@
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Times counting the mines of 1000x1000 and 10,000x10,000 boards three ways: box by box with a
+ * check for the edge of the board on every neighbour (MineCounterTest.bruteForce), box by box
+ * on a padded board through a table of neighbour offsets (as Board did before it used
+ * MineCounter), and a row at a time with MineCounter (plain loops and, when loaded, the
+ * Vector API).
+ *
+ * Each way is run for a while to warm up (so the JIT compiler has done its work), then the timed runs' best and mean are printed, per
+ * box. The big board takes about 400 MB, so give the JVM room:
+ *
+ *   java -Xmx1g --add-modules jdk.incubator.vector -cp out MineCounterBenchmark [runs]
+ *
+ * @author martin
+ *
+ */
+public class MineCounterBenchmark {
+
+	private static final int[] SIZES = { 1000, 10000 };
+	private static final int WARMUP = 3;					// The fewest untimed runs.
+	private static final long WARMUP_NANOS = 2_000_000_000L;	// The least time spent on untimed runs.
+
+	private static long sink;	// Keeps the results alive so the work isn't optimized away.
+
+	public static void main(String[] args) {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		Random random = new Random(29);
+		if(!MineCounter.hasVectorAPI())
+			System.out.println("Vector API not loaded, only timing the plain loops");
+
+		for(int size : SIZES) {
+			boolean[][] mines = new boolean[size][size];
+			for(boolean[] row : mines) {
+				for(int col = 0; col < size; col++)
+					row[col] = random.nextInt(5) == 0;
+			}
+			System.out.println(size + "x" + size + ":");
+			time("box by box", mines, runs, () -> MineCounterTest.bruteForce(mines));
+			time("offsets", mines, runs, () -> countWithOffsets(mines));
+			time("plain loops", mines, runs, () -> MineCounter.countAll(mines, false));
+			if(MineCounter.hasVectorAPI())
+				time("Vector API", mines, runs, () -> MineCounter.countAll(mines, true));
+		}
+		if(sink == 42)
+			System.out.println();
+	}
+
+	/**
+	 * Counts box by box on a padded flat board, one loop over the offsets of the neighbours.
+	 */
+	static byte[][] countWithOffsets(boolean[][] mines) {
+		int rows = mines.length;
+		int columns = mines[0].length;
+		int stride = columns + 2;
+		int[] neighbours = Board.neighbourOffsets(stride);
+		byte[] padded = new byte[(rows + 2) * stride];
+		for(int row = 0; row < rows; row++) {
+			for(int col = 0; col < columns; col++)
+				padded[(row + 1) * stride + col + 1] = (byte) (mines[row][col] ? 1 : 0);
+		}
+
+		byte[][] counts = new byte[rows][columns];
+		for(int row = 0; row < rows; row++) {
+			for(int col = 0, box = (row + 1) * stride + 1; col < columns; col++, box++) {
+				int mine = 0;
+				for(int offset : neighbours)
+					mine += padded[box + offset];
+				counts[row][col] = (byte) mine;
+			}
+		}
+		return counts;
+	}
+
+	private static void time(String name, boolean[][] mines, int runs, Supplier<byte[][]> count) {
+		double boxes = (double) mines.length * mines[0].length;
+		long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+		for(int run = 0; run < WARMUP || System.nanoTime() < warmupEnd; run++)
+			sink += count.get()[run % mines.length][0];
+
+		long best = Long.MAX_VALUE;
+		long total = 0;
+		for(int run = 0; run < runs; run++) {
+			long time = System.nanoTime();
+			byte[][] counts = count.get();
+			time = System.nanoTime() - time;
+			sink += counts[run % counts.length][0];
+			best = Math.min(best, time);
+			total += time;
+		}
+		System.out.printf("  %-11s best %8.1f ms (%5.2f ns/box), mean %8.1f ms%n", name, best / 1e6, best / boxes,
+				total / 1e6 / runs);
+	}
+}
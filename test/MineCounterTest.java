@@ -0,0 +1,110 @@
+import java.util.Random;
+
+/**
+ * Checks MineCounter against counting each box's neighbours one at a time.
+ *
+ * Board's counts, which it gets from MineCounter's padded flat arrays, are checked too.
+ * Boards of many shapes (one box, one row, one column, widths on both sides of every vector
+ * length) and mine densities (none, some, all) are counted with the plain loops and, when it is
+ * loaded, with the Vector API, and every count must match.
+ *
+ * Run with: java -cp out MineCounterTest
+ * or, to check the Vector API too, build vector/ into out and run with
+ *   java --add-modules jdk.incubator.vector -cp out MineCounterTest
+ * It exits with 1 if any count is wrong.
+ *
+ * @author martin
+ *
+ */
+public class MineCounterTest {
+
+	private static final double[] DENSITIES = { 0, 0.1, 0.5, 0.9, 1 };
+
+	private static int failures;
+
+	public static void main(String[] args) {
+		Random random = new Random(29);
+		boolean vector = MineCounter.hasVectorAPI();
+		int boards = 0;
+
+		for(int rows = 1; rows <= 5; rows++) {
+			for(int columns = 1; columns <= 140; columns++) {
+				for(double density : DENSITIES) {
+					check(randomMines(rows, columns, density, random), vector);
+					boards++;
+				}
+			}
+		}
+		for(int i = 0; i < 50; i++) {
+			check(randomMines(1 + random.nextInt(300), 1 + random.nextInt(300), random.nextDouble(), random), vector);
+			boards++;
+		}
+
+		System.out.println(boards + " boards checked" + (vector ? " with and without the Vector API"
+				: " without the Vector API (not loaded)"));
+		if(failures > 0) {
+			System.out.println(failures + " boards counted wrong");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+	private static boolean[][] randomMines(int rows, int columns, double density, Random random) {
+		boolean[][] mines = new boolean[rows][columns];
+		for(int row = 0; row < rows; row++) {
+			for(int col = 0; col < columns; col++)
+				mines[row][col] = random.nextDouble() < density;
+		}
+		return mines;
+	}
+
+	private static void check(boolean[][] mines, boolean vector) {
+		byte[][] expected = bruteForce(mines);
+		compare(mines, expected, MineCounter.countAll(mines, false), "plain loops");
+		if(vector)
+			compare(mines, expected, MineCounter.countAll(mines, true), "Vector API");
+
+		Board board = new Board(mines);
+		byte[][] counts = new byte[mines.length][mines[0].length];
+		for(int row = 0; row < counts.length; row++) {
+			for(int col = 0; col < counts[row].length; col++)
+				counts[row][col] = (byte) board.getMineCount(row, col);
+		}
+		compare(mines, expected, counts, "Board");
+	}
+
+	private static void compare(boolean[][] mines, byte[][] expected, byte[][] counts, String how) {
+		for(int row = 0; row < expected.length; row++) {
+			for(int col = 0; col < expected[row].length; col++) {
+				if(counts[row][col] != expected[row][col]) {
+					failures++;
+					System.out.println("FAILED: " + how + " on " + mines.length + "x" + mines[0].length + " gave "
+							+ counts[row][col] + " at " + row + "," + col + ", expected " + expected[row][col]);
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts the mines around each box by looking at its neighbours.
+	 */
+	static byte[][] bruteForce(boolean[][] mines) {
+		int rows = mines.length;
+		int columns = mines[0].length;
+		byte[][] counts = new byte[rows][columns];
+		for(int row = 0; row < rows; row++) {
+			for(int col = 0; col < columns; col++) {
+				int count = 0;
+				for(Direction d : Direction.values()) {
+					int r = row + d.getRow();
+					int c = col + d.getCol();
+					if(r >= 0 && r < rows && c >= 0 && c < columns && mines[r][c])
+						count++;
+				}
+				counts[row][col] = (byte) count;
+			}
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,143 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks Topology and TopologyBoard: that a square topology plays like Board, that a graph box
+ * can have more mines around it than a byte holds, that a graph file giving an edge twice or a
+ * number of boxes that isn't positive is rejected, that torus and hex boxes have the right
+ * neighbours, and that BoardRenderer draws every shape.
+ *
+ * Run with: java -cp out TopologyTest
+ * It exits with 1 if any check fails.
+ *
+ * @author martin
+ *
+ */
+public class TopologyTest {
+
+	private static int failures;
+
+	public static void main(String[] args) throws IOException {
+		Random random = new Random(32);
+
+		// A square topology must count and cascade like Board.
+		for(int game = 0; game < 50; game++) {
+			int rows = 1 + random.nextInt(30);
+			int columns = 1 + random.nextInt(30);
+			boolean[][] mines = MinesweeperBatch.placeMines(rows, columns, rows * columns / 6, random);
+			boolean[] flat = new boolean[rows * columns];
+			for(int box = 0; box < flat.length; box++)
+				flat[box] = mines[box / columns][box % columns];
+
+			Board board = new Board(mines);
+			TopologyBoard topologyBoard = new TopologyBoard(Topology.square(rows, columns), flat);
+			for(int move = 0; move < 20 && !board.hitMine(); move++) {
+				int row = random.nextInt(rows);
+				int col = random.nextInt(columns);
+				check(board.reveal(row, col) == topologyBoard.reveal(row * columns + col), "reveal differs on game " + game);
+			}
+			for(int box = 0; box < flat.length; box++) {
+				check(board.getMineCount(box / columns, box % columns) == topologyBoard.getMineCount(box), "count differs on game " + game);
+				check(board.getState(box / columns, box % columns) == topologyBoard.getState(box), "state differs on game " + game);
+			}
+			check(board.getBoxesShown() == topologyBoard.getBoxesShown(), "boxes shown differ on game " + game);
+		}
+
+		// A star: box 0 joined to 300 boxes with a mine each.
+		Path dir = Files.createTempDirectory("topology");
+		StringBuilder star = new StringBuilder("301\n");
+		for(int box = 1; box <= 300; box++)
+			star.append("0 ").append(box).append('\n');
+		Path starFile = dir.resolve("star.txt");
+		Files.writeString(starFile, star);
+		boolean[] starMines = new boolean[301];
+		Arrays.fill(starMines, 1, 301, true);
+		TopologyBoard starBoard = new TopologyBoard(Topology.load(starFile), starMines);
+		check(starBoard.getMineCount(0) == 300, "star centre counted " + starBoard.getMineCount(0) + " mines, expected 300");
+
+		// The same edge twice, either way round.
+		Path twice = dir.resolve("twice.txt");
+		Files.writeString(twice, "3\n0 1\n1 2\n1 0\n");
+		try {
+			Topology.load(twice);
+			check(false, "an edge given twice was accepted");
+		}
+		catch(IOException e) {
+			check(e.getMessage().contains("edge 0 1"), "unexpected message: " + e.getMessage());
+		}
+
+		// A number of boxes that isn't positive, caught where it is read.
+		for(String size : new String[] { "-5", "0" }) {
+			Path bad = dir.resolve("size.txt");
+			Files.writeString(bad, "# no boxes\n" + size + "\n0 1\n");
+			try {
+				Topology.load(bad);
+				check(false, "a graph of " + size + " boxes was accepted");
+			}
+			catch(IOException e) {
+				check(e.getMessage().contains(":2: "), "unexpected message: " + e.getMessage());
+			}
+		}
+
+		// A torus corner sees the opposite corner, row and column, and counts their mines.
+		Topology torus = Topology.torus(5, 7);
+		checkNeighbours(torus, 0, 4 * 7 + 6, 4 * 7, 4 * 7 + 1, 6, 1, 7 + 6, 7, 7 + 1);
+		boolean[] torusMines = new boolean[torus.getSize()];
+		for(int box : new int[] { 4 * 7 + 6, 4 * 7, 6, 7 + 1, 2 * 7 + 2, 3 * 7 + 5 })
+			torusMines[box] = true;
+		TopologyBoard torusBoard = new TopologyBoard(torus, torusMines);
+		check(torusBoard.getMineCount(0) == 4, "torus corner counted " + torusBoard.getMineCount(0) + " mines, expected 4");
+
+		// Hex rows: even rows touch the column before in the rows next to them, odd rows the column after.
+		Topology hexagons = Topology.hex(4, 5);
+		checkNeighbours(hexagons, 2 * 5 + 2, 2 * 5 + 1, 2 * 5 + 3, 5 + 1, 5 + 2, 3 * 5 + 1, 3 * 5 + 2);
+		checkNeighbours(hexagons, 5 + 2, 5 + 1, 5 + 3, 2, 3, 2 * 5 + 2, 2 * 5 + 3);
+		checkNeighbours(hexagons, 0, 1, 5);
+		checkNeighbours(hexagons, 5 + 4, 5 + 3, 4, 2 * 5 + 4);
+
+		// Every shape is drawn, with a box's fill where the layout puts it.
+		BoardRenderer renderer = new BoardRenderer(10);
+		Topology[] topologies = { Topology.torus(5, 7), Topology.hex(5, 7), Topology.load(starFile) };
+		for(Topology topology : topologies) {
+			TopologyBoard board = new TopologyBoard(topology, new boolean[topology.getSize()]);
+			int[] pixels = renderer.render(board, false, null);
+			int width = renderer.getWidth(board);
+			check(pixels.length >= width * renderer.getHeight(board), topology + ": too few pixels");
+			renderer.writePng(board, true, dir.resolve("board.png"));
+			check(Files.size(dir.resolve("board.png")) > 0, topology + ": empty PNG");
+		}
+		TopologyBoard hex = new TopologyBoard(Topology.hex(2, 2), new boolean[4]);
+		int[] pixels = renderer.render(hex, false, null);
+		int width = renderer.getWidth(hex);
+		check(pixels[12 * width + 1] == BoardRenderer.BLACK && pixels[12 * width + 6] == BoardRenderer.HIDDEN,
+				"hex: the second row isn't shifted half a box");
+
+		if(failures > 0) {
+			System.out.println(failures + " checks failed");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+	/**
+	 * Checks that a box has exactly the given neighbours, in any order.
+	 */
+	private static void checkNeighbours(Topology topology, int box, int... expected) {
+		int[] offsets = topology.getOffsets();
+		int[] around = Arrays.copyOfRange(topology.getNeighbours(), offsets[box], offsets[box + 1]);
+		Arrays.sort(around);
+		Arrays.sort(expected);
+		check(Arrays.equals(around, expected), topology + ": box " + box + " has the neighbours "
+				+ Arrays.toString(around) + ", expected " + Arrays.toString(expected));
+	}
+
+	private static void check(boolean ok, String message) {
+		if(!ok) {
+			failures++;
+			System.out.println("FAILED: " + message);
+		}
+	}
+}
@@ -0,0 +1,221 @@
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks Board's Zobrist hash and the TranspositionTable.
+ *
+ * Random games are played with reveals, chords, flags and undos, and after every move the
+ * board's hash must match one computed from scratch from getVisible(). Undoing a move must
+ * bring back the hash from before it. The table is checked for lookups, replacing answers,
+ * least recently used eviction within its memory budget, clear(), and for exact statistics
+ * when several threads use it at once.
+ *
+ * Run with: java -cp out TranspositionTableTest
+ * It exits with 1 if any check fails.
+ *
+ * @author martin
+ *
+ */
+public class TranspositionTableTest {
+
+	private static final int VALUE_LENGTH = 4;	// The length of every answer put in the tables here.
+
+	private static int failures;
+
+	public static void main(String[] args) throws InterruptedException {
+		Random random = new Random(35);
+		checkHashes(random);
+		checkLookups();
+		checkEviction(random);
+		checkThreads();
+
+		if(failures > 0) {
+			System.out.println(failures + " checks failed");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+	/*********** HASHES ************/
+
+	private static void checkHashes(Random random) {
+		for(int game = 0; game < 300; game++) {
+			int rows = 1 + random.nextInt(16);
+			int columns = 1 + random.nextInt(30);
+			Board board = new Board(placeMines(rows, columns, random.nextInt(rows * columns / 5 + 1), random));
+			check(board.getHash() == 0, "game " + game + ": a new board has the hash " + board.getHash());
+
+			for(int move = 0; move < 40 && !board.isCleared(); move++) {
+				int row = random.nextInt(rows);
+				int col = random.nextInt(columns);
+				long before = board.getHash();
+				Minesweeper.BoxState[] states = states(board);
+
+				int kind = random.nextInt(4);
+				if(kind == 0)
+					board.toggleFlag(row, col);
+				else if(kind == 1)
+					board.chord(row, col);
+				else if(!board.hasMine(row, col))
+					board.reveal(row, col);
+				check(board.getHash() == hashOf(board), "game " + game + ": the hash is wrong after move " + move);
+
+				// Undo about one move in four the way BoardHistory does, one box at a time.
+				if(random.nextInt(4) == 0) {
+					for(int r = 0; r < rows; r++) {
+						for(int c = 0; c < columns; c++) {
+							if(board.getState(r, c) != states[r * columns + c])
+								board.setState(r, c, states[r * columns + c]);
+						}
+					}
+					check(board.getHash() == before, "game " + game + ": undoing move " + move + " didn't restore the hash");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the hash of what a player can see, box by box.
+	 */
+	private static long hashOf(Board board) {
+		byte[] visible = board.getVisible();
+		long hash = 0;
+		for(int box = 0; box < visible.length; box++) {
+			if(visible[box] != Board.VISIBLE_HIDDEN && visible[box] != Board.VISIBLE_PADDING)
+				hash ^= Zobrist.key(box, visible[box]);
+		}
+		return hash;
+	}
+
+	private static Minesweeper.BoxState[] states(Board board) {
+		Minesweeper.BoxState[] states = new Minesweeper.BoxState[board.getRows() * board.getColumns()];
+		for(int row = 0; row < board.getRows(); row++) {
+			for(int col = 0; col < board.getColumns(); col++)
+				states[row * board.getColumns() + col] = board.getState(row, col);
+		}
+		return states;
+	}
+
+	/*********** TABLE ************/
+
+	private static void checkLookups() {
+		TranspositionTable table = new TranspositionTable(1 << 20);
+		check(table.get(42) == null, "an empty table found an answer");
+
+		double[] first = new double[VALUE_LENGTH];
+		table.put(42, first);
+		long entryBytes = table.getMemoryBytes();
+		check(table.get(42) == first, "the answer wasn't found");
+
+		// Replacing an answer must not count its memory twice.
+		double[] second = new double[VALUE_LENGTH];
+		table.put(42, second);
+		check(table.get(42) == second, "the answer wasn't replaced");
+		check(table.getEntries() == 1 && table.getMemoryBytes() == entryBytes,
+				"one answer takes " + table.getMemoryBytes() + " bytes after replacing, not " + entryBytes);
+		check(table.getHits() == 2 && table.getMisses() == 1, table.getHits() + " hits and " + table.getMisses() + " misses");
+
+		table.clear();
+		check(table.getEntries() == 0 && table.getMemoryBytes() == 0, "clear() left answers");
+		check(table.get(42) == null, "an answer was found after clear()");
+		check(table.getHits() == 2 && table.getMisses() == 2, "clear() changed the statistics");
+	}
+
+	private static void checkEviction(Random random) {
+		long entryBytes = entryBytes();
+		int perStripe = 10;
+		TranspositionTable table = new TranspositionTable(16 * perStripe * entryBytes);
+
+		for(int i = 0; i < 5000; i++)
+			table.put(random.nextLong(), new double[VALUE_LENGTH]);
+		check(table.getMemoryBytes() <= table.getMaxBytes(),
+				table.getMemoryBytes() + " bytes used with a budget of " + table.getMaxBytes());
+		check(table.getMemoryBytes() == table.getEntries() * entryBytes, "the memory doesn't add up to the entries");
+		check(table.getEvictions() == 5000 - table.getEntries(),
+				table.getEvictions() + " evictions leaving " + table.getEntries() + " of 5000 answers");
+
+		// Hashes with the same top bits share a stripe. The one looked up last must stay.
+		table.clear();
+		for(long i = 0; i < perStripe; i++)
+			table.put(i, new double[VALUE_LENGTH]);
+		table.get(0);
+		table.put(perStripe, new double[VALUE_LENGTH]);
+		check(table.get(0) != null, "the most recently used answer was evicted");
+		check(table.get(1) == null, "the least recently used answer was kept");
+	}
+
+	/**
+	 * Has several threads look up and add answers in a small table at once.
+	 */
+	private static void checkThreads() throws InterruptedException {
+		long entryBytes = entryBytes();
+		TranspositionTable table = new TranspositionTable(16 * 50 * entryBytes);
+		AtomicLong lookups = new AtomicLong();
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[4];
+
+		for(int t = 0; t < threads.length; t++) {
+			Random random = new Random(t);
+			threads[t] = new Thread(() -> {
+				try {
+					start.await();
+				}
+				catch(InterruptedException e) {
+					return;
+				}
+				for(int i = 0; i < 100000; i++) {
+					// Spread a few thousand hashes over every stripe.
+					long hash = (long) random.nextInt(4000) * 0x9E3779B97F4A7C15L;
+					if(table.get(hash) == null)
+						table.put(hash, new double[VALUE_LENGTH]);
+					lookups.incrementAndGet();
+				}
+			});
+			threads[t].start();
+		}
+		start.countDown();
+		for(Thread thread : threads)
+			thread.join();
+
+		check(table.getHits() + table.getMisses() == lookups.get(),
+				table.getHits() + " hits and " + table.getMisses() + " misses for " + lookups.get() + " lookups");
+		check(table.getMemoryBytes() <= table.getMaxBytes(),
+				table.getMemoryBytes() + " bytes used with a budget of " + table.getMaxBytes());
+		check(table.getMemoryBytes() == table.getEntries() * entryBytes, "the memory doesn't add up to the entries");
+		check(table.getEvictions() > 0, "4000 answers fit in a table for 800");
+	}
+
+	/**
+	 * Returns how much memory the table counts for one answer of VALUE_LENGTH.
+	 */
+	private static long entryBytes() {
+		TranspositionTable table = new TranspositionTable(1 << 20);
+		table.put(0, new double[VALUE_LENGTH]);
+		return table.getMemoryBytes();
+	}
+
+	/**
+	 * Places mines on random boxes of a new field.
+	 */
+	private static boolean[][] placeMines(int rows, int columns, int mines, Random random) {
+		boolean[][] field = new boolean[rows][columns];
+		int placed = 0;
+		while(placed < mines) {
+			int row = random.nextInt(rows);
+			int col = random.nextInt(columns);
+			if(!field[row][col]) {
+				field[row][col] = true;
+				placed++;
+			}
+		}
+		return field;
+	}
+
+	private static void check(boolean ok, String message) {
+		if(!ok) {
+			failures++;
+			System.out.println("FAILED: " + message);
+		}
+	}
+}